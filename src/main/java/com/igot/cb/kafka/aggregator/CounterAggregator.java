@@ -0,0 +1,213 @@
+package com.igot.cb.kafka.aggregator;
+
+import com.igot.cb.kafka.backpressure.AdaptiveBackpressureController;
+import com.igot.cb.kafka.dedupe.EventDeduplicator;
+import com.igot.cb.kafka.service.CommunityCounterService;
+import com.igot.cb.pores.repository.CommunityEngagementRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffers counter deltas per community and counter field and writes them behind in one Postgres
+ * update, one ES bulk request and one Redis pipeline, every flush interval or every max events,
+ * whichever comes first. Each listener batch is buffered together with its acknowledgment, so its
+ * offsets are acknowledged and its events marked processed only by the flush that wrote its deltas.
+ */
+@Component
+@Slf4j
+public class CounterAggregator {
+
+    private final List<PendingBatch> pendingBatches = new ArrayList<>();
+
+    private final ReentrantLock bufferLock = new ReentrantLock();
+
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "counter-flusher"));
+
+    @Autowired
+    private CommunityCounterService communityCounterService;
+
+    @Autowired
+    private EventDeduplicator eventDeduplicator;
+
+    @Autowired
+    private AdaptiveBackpressureController backpressureController;
+
+    private final int flushMaxEvents;
+
+    public CounterAggregator(@Value("${kafka.post.count.aggregate.flush.interval.ms}") long flushIntervalMs,
+                             @Value("${kafka.post.count.aggregate.flush.max.events}") int flushMaxEvents) {
+        this.flushMaxEvents = flushMaxEvents;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffers the netted deltas of a listener batch together with its acknowledgment and event keys,
+     * and triggers an early flush once enough events are buffered.
+     */
+    public void addBatch(Map<String, Map<String, Long>> deltas, Map<TopicPartition, Long> firstOffsets,
+                         Acknowledgment acknowledgment, List<String> eventKeys, int eventCount) {
+        bufferLock.lock();
+        try {
+            pendingBatches.add(new PendingBatch(deltas, firstOffsets, acknowledgment, eventKeys, eventCount));
+        } finally {
+            bufferLock.unlock();
+        }
+        if (pendingEvents.addAndGet(eventCount) >= flushMaxEvents) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush the counter deltas, will retry on next flush", e);
+        }
+    }
+
+    /**
+     * Writes every buffered delta to the stores and acknowledges the records they came from.
+     * If the Postgres update fails the batches stay buffered for the next flush.
+     */
+    public void flush() throws Exception {
+        flush(null, Set.of());
+    }
+
+    /**
+     * Flushes before the partitions are revoked, on the thread of the consumer losing them. If that
+     * fails the batches holding records of the revoked partitions are dropped, since their new owner
+     * consumes the records again. A dropped batch is never acknowledged, so the consumer is rewound
+     * on the partitions it keeps to the first record they had in a dropped batch.
+     */
+    public void flushOnRevoke(Consumer<?, ?> consumer, Collection<TopicPartition> revokedPartitions) throws Exception {
+        flush(consumer, revokedPartitions);
+    }
+
+    private void flush(Consumer<?, ?> consumer, Collection<TopicPartition> revokedPartitions) throws Exception {
+        flushLock.lock();
+        try {
+            List<PendingBatch> batches = takePendingBatches();
+            Map<String, Map<String, Long>> deltas = merge(batches);
+            List<CommunityEngagementRepository.CommunityData> updatedCommunities;
+            try {
+                updatedCommunities = deltas.isEmpty() ? List.of() : communityCounterService.applyCounterDeltas(deltas);
+            } catch (Exception e) {
+                restore(batches, consumer, revokedPartitions);
+                throw e;
+            }
+            for (PendingBatch processed : batches) {
+                eventDeduplicator.markProcessed(processed.eventKeys());
+                processed.acknowledgment().acknowledge();
+                backpressureController.release(processed.eventCount());
+            }
+            communityCounterService.propagate(updatedCommunities);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<PendingBatch> takePendingBatches() {
+        bufferLock.lock();
+        try {
+            List<PendingBatch> batches = new ArrayList<>(pendingBatches);
+            pendingBatches.clear();
+            pendingEvents.set(0);
+            return batches;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Puts the batches of a failed flush back in front of the ones buffered meanwhile, except
+     * those holding records of revoked partitions. Rewinding a kept partition redelivers every
+     * later record of it too, so the batches holding those are dropped as well.
+     */
+    private void restore(List<PendingBatch> batches, Consumer<?, ?> consumer, Collection<TopicPartition> revokedPartitions) {
+        List<PendingBatch> retained = new ArrayList<>(batches);
+        Set<TopicPartition> droppedPartitions = new HashSet<>(revokedPartitions);
+        Map<TopicPartition, Long> rewindOffsets = new HashMap<>();
+        boolean dropped = true;
+        while (dropped) {
+            dropped = false;
+            for (Iterator<PendingBatch> iterator = retained.iterator(); iterator.hasNext(); ) {
+                PendingBatch batch = iterator.next();
+                if (batch.firstOffsets().keySet().stream().noneMatch(droppedPartitions::contains)) {
+                    continue;
+                }
+                iterator.remove();
+                dropped = true;
+                log.warn("Dropping {} buffered counter events of partitions {}", batch.eventCount(), batch.firstOffsets().keySet());
+                backpressureController.release(batch.eventCount());
+                batch.firstOffsets().forEach((partition, offset) -> {
+                    droppedPartitions.add(partition);
+                    if (!revokedPartitions.contains(partition)) {
+                        rewindOffsets.merge(partition, offset, Math::min);
+                    }
+                });
+            }
+        }
+        if (consumer != null) {
+            Set<TopicPartition> assignment = consumer.assignment();
+            rewindOffsets.forEach((partition, offset) -> {
+                if (assignment.contains(partition)) {
+                    log.warn("Rewinding {} to offset {} to consume its dropped counter events again", partition, offset);
+                    consumer.seek(partition, offset);
+                }
+            });
+        }
+        bufferLock.lock();
+        try {
+            pendingBatches.addAll(0, retained);
+            pendingEvents.addAndGet(retained.stream().mapToInt(PendingBatch::eventCount).sum());
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private Map<String, Map<String, Long>> merge(List<PendingBatch> batches) {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        for (PendingBatch batch : batches) {
+            batch.deltas().forEach((communityId, counterDeltas) -> counterDeltas.forEach((counterField, delta) ->
+                    deltas.computeIfAbsent(communityId, key -> new HashMap<>()).merge(counterField, delta, Long::sum)));
+        }
+        deltas.values().forEach(counterDeltas -> counterDeltas.values().removeIf(delta -> delta == 0));
+        deltas.values().removeIf(Map::isEmpty);
+        return deltas;
+    }
+
+    private record PendingBatch(Map<String, Map<String, Long>> deltas, Map<TopicPartition, Long> firstOffsets,
+                                Acknowledgment acknowledgment, List<String> eventKeys, int eventCount) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,166 @@
+package com.igot.cb.kafka.backpressure;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the number of in-flight counter updates under a limit that adapts to downstream health:
+ * the limit grows additively while every store stays under its p95 latency and error rate
+ * thresholds and shrinks multiplicatively when one of them degrades. Listener containers are
+ * paused while the limit is reached or a store is failing, instead of letting polls time out.
+ */
+@Component
+@Slf4j
+public class AdaptiveBackpressureController {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Map<Downstream, Long> p95ThresholdMillis = new EnumMap<>(Downstream.class);
+
+    private final ScheduledExecutorService ticker =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "backpressure-controller"));
+
+    @Autowired
+    private DownstreamLatencyTracker downstreamLatencyTracker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @Value("${kafka.backpressure.enabled}")
+    private boolean enabled;
+
+    @Value("${kafka.backpressure.inflight.min}")
+    private int minInFlight;
+
+    @Value("${kafka.backpressure.inflight.max}")
+    private int maxInFlight;
+
+    @Value("${kafka.backpressure.inflight.increase}")
+    private int increaseStep;
+
+    @Value("${kafka.backpressure.inflight.decrease.factor}")
+    private double decreaseFactor;
+
+    @Value("${kafka.backpressure.error.rate.threshold}")
+    private double errorRateThreshold;
+
+    private volatile int inFlightLimit;
+
+    private volatile boolean downstreamFailing;
+
+    private final ReentrantLock pauseLock = new ReentrantLock();
+
+    private boolean paused;
+
+    public AdaptiveBackpressureController(@Value("${kafka.backpressure.interval.ms}") long intervalMs,
+                                          @Value("${kafka.backpressure.latency.p95.threshold.ms.postgres}") long postgresThreshold,
+                                          @Value("${kafka.backpressure.latency.p95.threshold.ms.elasticsearch}") long elasticsearchThreshold,
+                                          @Value("${kafka.backpressure.latency.p95.threshold.ms.redis}") long redisThreshold,
+                                          @Value("${kafka.backpressure.inflight.max}") int maxInFlight) {
+        p95ThresholdMillis.put(Downstream.POSTGRES, postgresThreshold);
+        p95ThresholdMillis.put(Downstream.ELASTICSEARCH, elasticsearchThreshold);
+        p95ThresholdMillis.put(Downstream.REDIS, redisThreshold);
+        this.inFlightLimit = maxInFlight;
+        ticker.scheduleWithFixedDelay(this::tickQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void acquire(int permits) {
+        if (inFlight.addAndGet(permits) >= inFlightLimit) {
+            applyPauseState();
+        }
+    }
+
+    public void release(int permits) {
+        if (inFlight.addAndGet(-permits) < inFlightLimit && !downstreamFailing) {
+            applyPauseState();
+        }
+    }
+
+    public int getInFlightLimit() {
+        return inFlightLimit;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (Exception e) {
+            log.error("Backpressure controller tick failed", e);
+        }
+    }
+
+    private void tick() {
+        boolean slow = false;
+        boolean failing = false;
+        for (Downstream downstream : Downstream.values()) {
+            DownstreamLatencyTracker.Stats stats = downstreamLatencyTracker.drain(downstream);
+            if (stats.calls() == 0) {
+                continue;
+            }
+            if (stats.p95Millis() > p95ThresholdMillis.get(downstream)) {
+                log.warn("{} p95 latency {} ms is over its threshold", downstream, stats.p95Millis());
+                slow = true;
+            }
+            if (stats.errorRate() > errorRateThreshold) {
+                log.warn("{} error rate {} is over its threshold", downstream, stats.errorRate());
+                failing = true;
+            }
+        }
+        if (slow || failing) {
+            inFlightLimit = Math.max(minInFlight, (int) (inFlightLimit * decreaseFactor));
+        } else {
+            inFlightLimit = Math.min(maxInFlight, inFlightLimit + increaseStep);
+        }
+        downstreamFailing = failing;
+        applyPauseState();
+    }
+
+    /**
+     * Pauses or resumes the containers from the state at the time the lock is held, so a pause
+     * decided on a stale count cannot overtake a later resume. Each container's own pause request
+     * is checked, which also covers containers started after the last change.
+     */
+    private void applyPauseState() {
+        pauseLock.lock();
+        try {
+            boolean pause = enabled && (downstreamFailing || inFlight.get() >= inFlightLimit);
+            if (pause != paused) {
+                paused = pause;
+                if (pause) {
+                    log.warn("Pausing listener containers, {} updates in flight with limit {}", inFlight.get(), inFlightLimit);
+                } else {
+                    log.info("Resuming listener containers, {} updates in flight with limit {}", inFlight.get(), inFlightLimit);
+                }
+            }
+            for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+                if (!container.isRunning() || container.isPauseRequested() == pause) {
+                    continue;
+                }
+                if (pause) {
+                    container.pause();
+                } else {
+                    container.resume();
+                }
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,7 @@
+package com.igot.cb.kafka.backpressure;
+
+public enum Downstream {
+    POSTGRES,
+    ELASTICSEARCH,
+    REDIS
+}
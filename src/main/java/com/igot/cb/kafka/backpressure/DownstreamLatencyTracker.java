@@ -0,0 +1,98 @@
+package com.igot.cb.kafka.backpressure;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Records the latency and outcome of every call made to a downstream store, in windows
+ * that the backpressure controller drains on each tick.
+ */
+@Component
+public class DownstreamLatencyTracker {
+
+    private static final int WINDOW_CAPACITY = 1024;
+
+    private final Map<Downstream, AtomicReference<Window>> windows = new EnumMap<>(Downstream.class);
+
+    public DownstreamLatencyTracker() {
+        for (Downstream downstream : Downstream.values()) {
+            windows.put(downstream, new AtomicReference<>(new Window()));
+        }
+    }
+
+    public <T> T measure(Downstream downstream, Supplier<T> call, Predicate<T> isFailure) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = isFailure.test(result);
+            return result;
+        } finally {
+            windows.get(downstream).get().record(System.nanoTime() - start, failed);
+        }
+    }
+
+    public <T> T measure(Downstream downstream, Supplier<T> call) {
+        return measure(downstream, call, result -> false);
+    }
+
+    public void measure(Downstream downstream, Runnable call) {
+        measure(downstream, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a call timed by the caller, for calls whose round trip is only visible to a client
+     * callback, like the requests of a bulk ingester.
+     */
+    public void record(Downstream downstream, long latencyNanos, boolean failed) {
+        windows.get(downstream).get().record(latencyNanos, failed);
+    }
+
+    /**
+     * Returns the statistics of the calls recorded since the previous drain and starts a new window.
+     */
+    public Stats drain(Downstream downstream) {
+        return windows.get(downstream).getAndSet(new Window()).stats();
+    }
+
+    public record Stats(long calls, long p95Millis, double errorRate) {
+    }
+
+    private static final class Window {
+        private final long[] latencies = new long[WINDOW_CAPACITY];
+        private final AtomicInteger next = new AtomicInteger();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        void record(long latencyNanos, boolean failed) {
+            latencies[Math.floorMod(next.getAndIncrement(), WINDOW_CAPACITY)] = latencyNanos;
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        Stats stats() {
+            long callCount = calls.sum();
+            if (callCount == 0) {
+                return new Stats(0, 0, 0.0);
+            }
+            int sampleCount = (int) Math.min(callCount, WINDOW_CAPACITY);
+            long[] samples = Arrays.copyOf(latencies, sampleCount);
+            Arrays.sort(samples);
+            long p95 = samples[Math.min(sampleCount - 1, (int) Math.ceil(sampleCount * 0.95) - 1)];
+            return new Stats(callCount, p95 / 1_000_000, (double) errors.sum() / callCount);
+        }
+    }
+}
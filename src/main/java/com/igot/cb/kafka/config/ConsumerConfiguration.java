@@ -1,18 +1,32 @@
 package com.igot.cb.kafka.config;
 
+import com.igot.cb.kafka.aggregator.CounterAggregator;
+import com.igot.cb.kafka.event.PostCountEvent;
+import com.igot.cb.kafka.event.PostCountEventDeserializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+@Slf4j
 @Configuration
 public class ConsumerConfiguration {
     @Value("${spring.kafka.bootstrap.servers}")
@@ -27,21 +41,87 @@ public class ConsumerConfiguration {
     @Value("${kafka.max.poll.records}")
     private Integer kafkaMaxPollRecords;
 
-    @Value("${kafka.auto.commit.interval.ms}")
-    private Integer kafkaAutoCommitInterval;
+    @Value("${kafka.consumer.virtual.threads.enabled}")
+    private boolean virtualThreadsEnabled;
 
     @Bean
-    KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, String>> kafkaListenerContainerFactory() {
+    KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PostCountEvent>> kafkaListenerContainerFactory() {
 
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        ConcurrentKafkaListenerContainerFactory<String, PostCountEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
         factory.setConcurrency(4);
         factory.getContainerProperties().setPollTimeout(3000);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        configureListenerTaskExecutor(factory);
         return factory;
     }
 
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PostCountEvent>> kafkaBatchListenerContainerFactory() {
+
+        ConcurrentKafkaListenerContainerFactory<String, PostCountEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(4);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setPollTimeout(3000);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        configureListenerTaskExecutor(factory);
+        return factory;
+    }
+
+    @Bean
+    KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PostCountEvent>> kafkaParallelListenerContainerFactory() {
+
+        ConcurrentKafkaListenerContainerFactory<String, PostCountEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(4);
+        factory.getContainerProperties().setPollTimeout(3000);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        configureListenerTaskExecutor(factory);
+        return factory;
+    }
+
+    @Bean
+    KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, PostCountEvent>> kafkaAggregatingListenerContainerFactory(
+            CounterAggregator counterAggregator) {
+
+        ConcurrentKafkaListenerContainerFactory<String, PostCountEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(4);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setPollTimeout(3000);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                try {
+                    counterAggregator.flushOnRevoke(consumer, partitions);
+                } catch (Exception e) {
+                    log.error("Failed to flush the counter deltas on partition revocation", e);
+                }
+            }
+        });
+        configureListenerTaskExecutor(factory);
+        return factory;
+    }
+
+    @Bean
+    public TaskExecutor postCountTaskExecutor() {
+        if (virtualThreadsEnabled) {
+            return new VirtualThreadTaskExecutor("post-count-io-");
+        }
+        return new SyncTaskExecutor();
+    }
+
+    private void configureListenerTaskExecutor(ConcurrentKafkaListenerContainerFactory<String, PostCountEvent> factory) {
+        if (virtualThreadsEnabled) {
+            factory.getContainerProperties().setListenerTaskExecutor(new VirtualThreadTaskExecutor("post-count-listener-"));
+        }
+    }
+
+    @Bean
+    public ConsumerFactory<String, PostCountEvent> consumerFactory() {
         return new DefaultKafkaConsumerFactory<>(consumerConfigs());
 
     }
@@ -50,12 +130,12 @@ public class ConsumerConfiguration {
     public Map<String, Object> consumerConfigs() {
         Map<String, Object> propsMap = new HashMap<>();
         propsMap.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkabootstrapAddress);
-        propsMap.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
+        propsMap.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         propsMap.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "1000");
-        propsMap.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, kafkaAutoCommitInterval);
         propsMap.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, "15000");
         propsMap.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        propsMap.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        propsMap.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        propsMap.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, PostCountEventDeserializer.class);
         propsMap.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, kafkaOffsetResetValue);
         propsMap.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, kafkaMaxPollInterval);
         propsMap.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, kafkaMaxPollRecords);
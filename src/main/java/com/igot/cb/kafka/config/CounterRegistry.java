@@ -0,0 +1,57 @@
+package com.igot.cb.kafka.config;
+
+import com.igot.cb.pores.util.Constants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps each consumed topic to the community data counter its increment and decrement events apply to.
+ */
+@Component("communityCounterRegistry")
+public class CounterRegistry {
+
+    private final Map<String, String> counterFieldByTopic;
+
+    public CounterRegistry(@Value("#{${kafka.community.counter.topics}}") Map<String, String> counterFieldByTopic) {
+        counterFieldByTopic.forEach((topic, field) -> {
+            if (field == null || field.isBlank()) {
+                throw new IllegalArgumentException("No counter field configured for topic " + topic);
+            }
+        });
+        this.counterFieldByTopic = Map.copyOf(counterFieldByTopic);
+    }
+
+    public String[] getTopics() {
+        return counterFieldByTopic.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Entry topics of the non-blocking retry chain, one per consumed topic.
+     */
+    public String[] getRetryTopics() {
+        return counterFieldByTopic.keySet().stream().map(this::getRetryTopic).toArray(String[]::new);
+    }
+
+    public String getRetryTopic(String topic) {
+        return topic + Constants.RETRY_TOPIC_SUFFIX;
+    }
+
+    public String getDeadLetterTopic(String topic) {
+        return getRetryTopic(topic) + Constants.DEAD_LETTER_TOPIC_SUFFIX;
+    }
+
+    public Set<String> getCounterFields() {
+        return Set.copyOf(counterFieldByTopic.values());
+    }
+
+    public String getCounterField(String topic) {
+        String field = counterFieldByTopic.get(topic);
+        if (field == null) {
+            throw new IllegalArgumentException("No counter field configured for topic " + topic);
+        }
+        return field;
+    }
+}
@@ -0,0 +1,56 @@
+package com.igot.cb.kafka.config;
+
+import com.igot.cb.kafka.event.PostCountEvent;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaRetryTopic;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@EnableKafkaRetryTopic
+@Configuration
+public class ProducerConfiguration {
+    @Value("${spring.kafka.bootstrap.servers}")
+    private String kafkabootstrapAddress;
+
+    @Bean
+    public KafkaAdmin kafkaAdmin() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, kafkabootstrapAddress);
+        return new KafkaAdmin(configs);
+    }
+
+    @Bean
+    public ProducerFactory<String, Object> counterRetryProducerFactory() {
+        Map<String, Object> propsMap = new HashMap<>();
+        propsMap.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkabootstrapAddress);
+        propsMap.put(ProducerConfig.ACKS_CONFIG, "all");
+        propsMap.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        JsonSerializer<PostCountEvent> eventSerializer = new JsonSerializer<>();
+        eventSerializer.setAddTypeInfo(false);
+        Map<Class<?>, Serializer<?>> valueSerializers = new LinkedHashMap<>();
+        valueSerializers.put(byte[].class, new ByteArraySerializer());
+        valueSerializers.put(PostCountEvent.class, eventSerializer);
+        return new DefaultKafkaProducerFactory<>(propsMap, new StringSerializer(),
+                new DelegatingByTypeSerializer(valueSerializers));
+    }
+
+    @Bean
+    public KafkaTemplate<String, Object> counterRetryKafkaTemplate() {
+        return new KafkaTemplate<>(counterRetryProducerFactory());
+    }
+}
@@ -1,73 +1,291 @@
 package com.igot.cb.kafka.consumer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.igot.cb.pores.cache.CacheService;
-import com.igot.cb.pores.elasticsearch.service.EsUtilService;
-import com.igot.cb.pores.entity.CommunityEntity;
-import com.igot.cb.pores.repository.CommunityEngagementRepository;
-import com.igot.cb.pores.util.CbServerProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.igot.cb.kafka.aggregator.CounterAggregator;
+import com.igot.cb.kafka.backpressure.AdaptiveBackpressureController;
+import com.igot.cb.kafka.config.CounterRegistry;
+import com.igot.cb.kafka.dedupe.EventDeduplicator;
+import com.igot.cb.kafka.event.PostCountEvent;
+import com.igot.cb.kafka.executor.KeyAffinityExecutor;
+import com.igot.cb.kafka.retry.CounterRetryPublisher;
+import com.igot.cb.kafka.service.CommunityCounterService;
 import com.igot.cb.pores.util.Constants;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @Component
 public class CommunityMetaUpdateConsumer {
-    private ObjectMapper mapper = new ObjectMapper();
 
     @Autowired
-    private CommunityEngagementRepository communityEngagementRepository;
+    private CommunityCounterService communityCounterService;
 
     @Autowired
-    private EsUtilService esUtilService;
+    private CounterRegistry counterRegistry;
 
     @Autowired
-    private CbServerProperties cbServerProperties;
+    private KeyAffinityExecutor keyAffinityExecutor;
 
     @Autowired
-    private CacheService cacheService;
+    private TaskExecutor postCountTaskExecutor;
 
-    @KafkaListener(groupId = "${kafka.topic.community.discussion.post.count.group}", topics = "${kafka.topic.community.discussion.post.count}")
-    public void demandContentConsumer(ConsumerRecord<String, String> data) {
-        log.info("Received post updation topic msg");
+    @Autowired
+    private CounterAggregator counterAggregator;
+
+    @Autowired
+    private EventDeduplicator eventDeduplicator;
+
+    @Autowired
+    private CounterRetryPublisher counterRetryPublisher;
+
+    @Autowired
+    private AdaptiveBackpressureController backpressureController;
+
+    @Value("${kafka.retry.backoff.initial.ms}")
+    private long retryBackoffInitialMs;
+
+    @Value("${kafka.retry.backoff.multiplier}")
+    private double retryBackoffMultiplier;
+
+    @Value("${kafka.retry.backoff.max.ms}")
+    private long retryBackoffMaxMs;
+
+    @KafkaListener(groupId = "${kafka.topic.community.discussion.post.count.group}", topics = "#{@communityCounterRegistry.topics}",
+            autoStartup = "#{'${kafka.post.count.consumer.mode}' == 'record'}")
+    public void demandContentConsumer(ConsumerRecord<String, PostCountEvent> data, Acknowledgment acknowledgment) {
+        log.info("Received counter updation topic msg from {}", data.topic());
+        String eventKey = EventDeduplicator.keyOf(data);
+        if (eventDeduplicator.isDuplicate(eventKey)) {
+            log.info("Skipping already processed counter msg {}", eventKey);
+            acknowledgment.acknowledge();
+            return;
+        }
+        backpressureController.acquire(1);
         try {
-            Map<String, Object> updateUserCount = mapper.readValue(data.value(), Map.class);
-            updatePostCount(updateUserCount);
+            updateCounter(data.topic(), data.value());
+            eventDeduplicator.markProcessed(eventKey);
         } catch (Exception e) {
             log.error("Failed to update the userCount" + data.value(), e);
+            counterRetryPublisher.publish(data);
+        } finally {
+            backpressureController.release(1);
         }
+        acknowledgment.acknowledge();
     }
 
-    private void updatePostCount(Map<String, Object> updateUserCount) {
-        log.info("Received post updation topic msg::inside updatePostCount");
-        String communityId = (String) updateUserCount.get(Constants.COMMUNITY_ID);
-        Optional<CommunityEntity> communityEntityOptional= communityEngagementRepository.findByCommunityIdAndIsActive(communityId, true);
-        if (communityEntityOptional.isPresent()){
-            ObjectNode dataNode = (ObjectNode) communityEntityOptional.get().getData();
-            long currentCount = 0L;
-            if (dataNode.has(Constants.COUNT_OF_POST_CREATED)) {
-                currentCount = dataNode.get(Constants.COUNT_OF_POST_CREATED).asLong();
+    @KafkaListener(groupId = "${kafka.topic.community.discussion.post.count.group}", topics = "#{@communityCounterRegistry.topics}",
+            containerFactory = "kafkaBatchListenerContainerFactory",
+            autoStartup = "#{'${kafka.post.count.consumer.mode}' == 'batch'}")
+    public void postCountBatchConsumer(List<ConsumerRecord<String, PostCountEvent>> records, Acknowledgment acknowledgment) {
+        log.info("Received counter updation topic batch of size: {}", records.size());
+        Map<String, Map<String, Long>> communityDeltas = new LinkedHashMap<>();
+        Map<String, List<ConsumerRecord<String, PostCountEvent>>> communityRecords = new HashMap<>();
+        Set<String> eventKeys = collectNewEvents(records, (data, event) -> {
+            communityDeltas.computeIfAbsent(event.communityId(), key -> new HashMap<>())
+                    .merge(counterRegistry.getCounterField(data.topic()), event.status().getDelta(), Long::sum);
+            communityRecords.computeIfAbsent(event.communityId(), key -> new ArrayList<>()).add(data);
+        });
+        List<CompletableFuture<Void>> updates = new ArrayList<>();
+        Set<String> unhandledEventKeys = ConcurrentHashMap.newKeySet();
+        communityDeltas.forEach((communityId, counterDeltas) -> {
+            counterDeltas.values().removeIf(delta -> delta == 0);
+            if (counterDeltas.isEmpty()) {
+                return;
             }
-            if (updateUserCount.get(Constants.STATUS).equals(Constants.INCREMENT)){
-                dataNode.put(Constants.COUNT_OF_POST_CREATED,currentCount+1);
-            } if (updateUserCount.get(Constants.STATUS).equals(Constants.DECREMENT)){
-                dataNode.put(Constants.COUNT_OF_POST_CREATED,currentCount-1);
+            backpressureController.acquire(1);
+            updates.add(CompletableFuture.runAsync(() -> {
+                try {
+                    communityCounterService.applyCounterDeltas(communityId, counterDeltas);
+                } catch (Exception e) {
+                    log.error("Failed to update the counters for community: {} by {}", communityId, counterDeltas, e);
+                    for (ConsumerRecord<String, PostCountEvent> data : communityRecords.get(communityId)) {
+                        if (!handOverForRetry(data)) {
+                            unhandledEventKeys.add(EventDeduplicator.keyOf(data));
+                        }
+                    }
+                } finally {
+                    backpressureController.release(1);
+                }
+            }, postCountTaskExecutor));
+        });
+        CompletableFuture.allOf(updates.toArray(new CompletableFuture[0])).join();
+        eventKeys.removeAll(unhandledEventKeys);
+        eventDeduplicator.markProcessed(eventKeys);
+        if (!unhandledEventKeys.isEmpty()) {
+            // the batch is redelivered, and only the events that were neither applied nor handed over are processed again
+            throw new IllegalStateException("Failed to hand counter msgs " + unhandledEventKeys + " over for retry");
+        }
+        acknowledgment.acknowledge();
+    }
+
+    @KafkaListener(groupId = "${kafka.topic.community.discussion.post.count.group}", topics = "#{@communityCounterRegistry.topics}",
+            containerFactory = "kafkaParallelListenerContainerFactory",
+            autoStartup = "#{'${kafka.post.count.consumer.mode}' == 'parallel'}")
+    public void postCountParallelConsumer(ConsumerRecord<String, PostCountEvent> data, Acknowledgment acknowledgment) {
+        PostCountEvent event = data.value();
+        String eventKey = EventDeduplicator.keyOf(data);
+        if (eventDeduplicator.isDuplicate(eventKey)) {
+            log.info("Skipping already processed counter msg {}", eventKey);
+            acknowledgment.acknowledge();
+            return;
+        }
+        backpressureController.acquire(1);
+        keyAffinityExecutor.execute(event.communityId(), () -> {
+            try {
+                updateCounter(data.topic(), event);
+                eventDeduplicator.markProcessed(eventKey);
+            } catch (Exception e) {
+                log.error("Failed to update the userCount" + event, e);
+                handOverUntilPublished(data);
+            } finally {
+                backpressureController.release(1);
+                // with out of order commits a record that is never acknowledged blocks its partition for good,
+                // so every record is acknowledged once it was applied or handed over for retry
+                acknowledgment.acknowledge();
             }
-            communityEntityOptional.get().setData(dataNode);
-            communityEngagementRepository.save(communityEntityOptional.get());
-            Map<String, Object> map = mapper.convertValue(dataNode, Map.class);
-            esUtilService.updateDocument(Constants.INDEX_NAME,
-                    communityEntityOptional.get().getCommunityId(), map,
-                    cbServerProperties.getElasticCommunityJsonPath());
-            cacheService.putCache(Constants.REDIS_KEY_PREFIX+"community:"+communityEntityOptional.get().getCommunityId(), communityEntityOptional.get().getData());
-            cacheService.deleteCache(Constants.CATEGORY_LIST_ALL_REDIS_KEY_PREFIX);
+        });
+    }
+
+    @KafkaListener(groupId = "${kafka.topic.community.discussion.post.count.group}", topics = "#{@communityCounterRegistry.topics}",
+            containerFactory = "kafkaAggregatingListenerContainerFactory",
+            autoStartup = "#{'${kafka.post.count.consumer.mode}' == 'aggregate'}")
+    public void postCountAggregatingConsumer(List<ConsumerRecord<String, PostCountEvent>> records, Acknowledgment acknowledgment) {
+        Map<String, Map<String, Long>> communityDeltas = new HashMap<>();
+        Set<String> eventKeys = collectNewEvents(records, (data, event) ->
+                communityDeltas.computeIfAbsent(event.communityId(), key -> new HashMap<>())
+                        .merge(counterRegistry.getCounterField(data.topic()), event.status().getDelta(), Long::sum));
+        Map<TopicPartition, Long> firstOffsets = new HashMap<>();
+        records.forEach(data -> firstOffsets.merge(new TopicPartition(data.topic(), data.partition()), data.offset(), Math::min));
+        backpressureController.acquire(records.size());
+        counterAggregator.addBatch(communityDeltas, firstOffsets, acknowledgment, new ArrayList<>(eventKeys), records.size());
+    }
+
+    @RetryableTopic(attempts = "${kafka.retry.attempts}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.backoff.initial.ms}",
+                    multiplierExpression = "${kafka.retry.backoff.multiplier}",
+                    maxDelayExpression = "${kafka.retry.backoff.max.ms}"),
+            kafkaTemplate = "counterRetryKafkaTemplate",
+            retryTopicSuffix = Constants.RETRY_BACKOFF_TOPIC_SUFFIX,
+            dltTopicSuffix = Constants.DEAD_LETTER_TOPIC_SUFFIX,
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            autoCreateTopics = "${kafka.retry.topics.auto.create}",
+            numPartitions = "${kafka.retry.topics.partitions}",
+            replicationFactor = "${kafka.retry.topics.replication}")
+    @KafkaListener(groupId = "${kafka.topic.community.discussion.post.count.group}", topics = "#{@communityCounterRegistry.retryTopics}")
+    public void counterRetryConsumer(ConsumerRecord<String, PostCountEvent> data, Acknowledgment acknowledgment)
+            throws JsonProcessingException {
+        Header sourceTopicHeader = data.headers().lastHeader(Constants.COUNTER_SOURCE_TOPIC_HEADER);
+        if (sourceTopicHeader == null) {
+            log.error("Skipping counter retry msg without source topic at offset {} of {}-{}", data.offset(), data.topic(), data.partition());
+            acknowledgment.acknowledge();
+            return;
+        }
+        String eventKey = EventDeduplicator.keyOf(data);
+        if (eventDeduplicator.isDuplicate(eventKey)) {
+            log.info("Skipping already processed counter msg {}", eventKey);
+            acknowledgment.acknowledge();
+            return;
         }
+        backpressureController.acquire(1);
+        try {
+            updateCounter(new String(sourceTopicHeader.value(), StandardCharsets.UTF_8), data.value());
+        } finally {
+            backpressureController.release(1);
+        }
+        eventDeduplicator.markProcessed(eventKey);
+        acknowledgment.acknowledge();
+    }
+
+    @DltHandler
+    public void counterDeadLetterConsumer(ConsumerRecord<String, PostCountEvent> data, Acknowledgment acknowledgment) {
+        log.error("Counter msg {} exhausted its retries and was parked on {}", data.value(), data.topic());
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Publishes the record to its retry topic and returns whether it was handed over. A record that
+     * was not must stay unacknowledged, so the count is not lost.
+     */
+    private boolean handOverForRetry(ConsumerRecord<String, PostCountEvent> data) {
+        try {
+            counterRetryPublisher.publish(data);
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to publish the counter msg for retry, leaving it to be redelivered" + data.value(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Keeps handing the record over for retry, backing off between attempts, until it is published.
+     * Records of the parallel consumer cannot be left for redelivery. Interrupting the lane stops
+     * the attempts.
+     */
+    private void handOverUntilPublished(ConsumerRecord<String, PostCountEvent> data) {
+        long delayMs = retryBackoffInitialMs;
+        while (!handOverForRetry(data)) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while handing the counter msg over for retry" + data.value());
+                return;
+            }
+            delayMs = Math.min((long) (delayMs * retryBackoffMultiplier), retryBackoffMaxMs);
+        }
+    }
+
+    /**
+     * Hands every readable record of the batch that was not processed before to the consumer
+     * and returns the keys of those records.
+     */
+    private Set<String> collectNewEvents(List<ConsumerRecord<String, PostCountEvent>> records,
+                                         BiConsumer<ConsumerRecord<String, PostCountEvent>, PostCountEvent> eventConsumer) {
+        Set<String> eventKeys = new LinkedHashSet<>();
+        for (ConsumerRecord<String, PostCountEvent> data : records) {
+            PostCountEvent event = data.value();
+            if (event == null) {
+                log.error("Skipping unreadable counter msg at offset {} of {}-{}", data.offset(), data.topic(), data.partition());
+                continue;
+            }
+            String eventKey = EventDeduplicator.keyOf(data);
+            if (eventKeys.contains(eventKey) || eventDeduplicator.isDuplicate(eventKey)) {
+                log.info("Skipping already processed counter msg {}", eventKey);
+                continue;
+            }
+            eventKeys.add(eventKey);
+            eventConsumer.accept(data, event);
+        }
+        return eventKeys;
+    }
+
+    private void updateCounter(String topic, PostCountEvent event) throws JsonProcessingException {
+        log.info("Received counter updation topic msg::inside updateCounter");
+        communityCounterService.applyCounterDeltas(event.communityId(),
+                Map.of(counterRegistry.getCounterField(topic), event.status().getDelta()));
     }
 }
@@ -0,0 +1,126 @@
+package com.igot.cb.kafka.dedupe;
+
+import com.igot.cb.kafka.event.PostCountEvent;
+import com.igot.cb.pores.cache.CacheService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers processed events for a bounded time window so redeliveries after a crash or
+ * rebalance are dropped. The window is a ring of hash sets, each covering a slice of the
+ * window; the oldest set is cleared as the ring rotates. The sets only live as long as the
+ * process, so processed keys are also kept in redis to drop what is redelivered after a
+ * restart or to another instance.
+ */
+@Component
+public class EventDeduplicator {
+
+    private static final String REDIS_KEY_PREFIX = "dedupe:";
+
+    private final List<Set<String>> generations;
+
+    private final long generationMillis;
+
+    private final long windowMillis;
+
+    private final ReentrantLock rotateLock = new ReentrantLock();
+
+    private volatile int current;
+
+    private volatile long currentStart;
+
+    private final LongSupplier clock;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Value("${kafka.dedupe.redis.enabled}")
+    private boolean redisEnabled;
+
+    @Autowired
+    public EventDeduplicator(@Value("${kafka.dedupe.window.ms}") long windowMillis,
+                             @Value("${kafka.dedupe.generations}") int generationCount) {
+        this(windowMillis, generationCount, System::currentTimeMillis);
+    }
+
+    EventDeduplicator(long windowMillis, int generationCount, LongSupplier clock) {
+        this.windowMillis = windowMillis;
+        this.generationMillis = Math.max(1L, windowMillis / generationCount);
+        this.clock = clock;
+        this.currentStart = clock.getAsLong();
+        this.generations = new ArrayList<>(generationCount);
+        for (int i = 0; i < generationCount; i++) {
+            generations.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Key of the event, its producer assigned id when present, else its topic, partition and offset.
+     */
+    public static String keyOf(ConsumerRecord<String, PostCountEvent> data) {
+        PostCountEvent event = data.value();
+        if (event != null && event.eventId() != null) {
+            return event.eventId();
+        }
+        return data.topic() + "-" + data.partition() + "@" + data.offset();
+    }
+
+    public boolean isDuplicate(String key) {
+        rotateIfNeeded();
+        for (Set<String> generation : generations) {
+            if (generation.contains(key)) {
+                return true;
+            }
+        }
+        return redisEnabled && cacheService.exists(REDIS_KEY_PREFIX + key);
+    }
+
+    public void markProcessed(String key) {
+        markProcessed(List.of(key));
+    }
+
+    public void markProcessed(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        rotateIfNeeded();
+        generations.get(current).addAll(keys);
+        if (redisEnabled) {
+            cacheService.putKeysWithTtl(keys.stream().map(key -> REDIS_KEY_PREFIX + key).toList(), "1", windowMillis);
+        }
+    }
+
+    private void rotateIfNeeded() {
+        long now = clock.getAsLong();
+        if (now - currentStart < generationMillis) {
+            return;
+        }
+        rotateLock.lock();
+        try {
+            long elapsedGenerations = (now - currentStart) / generationMillis;
+            if (elapsedGenerations == 0) {
+                return;
+            }
+            int steps = (int) Math.min(elapsedGenerations, generations.size());
+            int next = current;
+            for (int i = 0; i < steps; i++) {
+                next = (next + 1) % generations.size();
+                generations.get(next).clear();
+            }
+            current = next;
+            currentStart = now;
+        } finally {
+            rotateLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.igot.cb.kafka.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Increment or decrement event for a community counter. The counter field is resolved
+ * from the topic the event was read from, see {@link com.igot.cb.kafka.config.CounterRegistry}.
+ * The optional event id lets producers mark retries of the same event for deduplication.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record PostCountEvent(String eventId, String communityId, PostCountStatus status) {
+}
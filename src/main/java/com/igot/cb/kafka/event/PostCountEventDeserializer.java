@@ -0,0 +1,34 @@
+package com.igot.cb.kafka.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads a {@link PostCountEvent} straight from the record bytes with a shared, precompiled reader.
+ * Messages without a community id or with an unknown status are rejected.
+ */
+public class PostCountEventDeserializer implements Deserializer<PostCountEvent> {
+
+    private static final ObjectReader READER = new ObjectMapper().readerFor(PostCountEvent.class);
+
+    @Override
+    public PostCountEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        PostCountEvent event;
+        try {
+            event = READER.readValue(data);
+        } catch (IOException e) {
+            throw new SerializationException("Invalid post count event on topic " + topic, e);
+        }
+        if (event == null || event.communityId() == null || event.status() == null) {
+            throw new SerializationException("Post count event on topic " + topic + " is missing communityId or status");
+        }
+        return event;
+    }
+}
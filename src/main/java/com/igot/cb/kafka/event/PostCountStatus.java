@@ -0,0 +1,38 @@
+package com.igot.cb.kafka.event;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.igot.cb.pores.util.Constants;
+
+public enum PostCountStatus {
+    INCREMENT(Constants.INCREMENT, 1L),
+    DECREMENT(Constants.DECREMENT, -1L);
+
+    private final String value;
+
+    private final long delta;
+
+    PostCountStatus(String value, long delta) {
+        this.value = value;
+        this.delta = delta;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    @JsonCreator
+    public static PostCountStatus fromValue(String value) {
+        for (PostCountStatus status : values()) {
+            if (status.value.equals(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown post count status: " + value);
+    }
+}
@@ -0,0 +1,72 @@
+package com.igot.cb.kafka.executor;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed set of single threaded lanes chosen by the hash of a key,
+ * so tasks for the same key run in submission order while different keys run in parallel.
+ * A full lane blocks the submitting thread instead of dropping the task.
+ */
+@Component
+@Slf4j
+public class KeyAffinityExecutor {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    public KeyAffinityExecutor(@Value("${kafka.post.count.parallel.lanes}") int laneCount,
+                               @Value("${kafka.post.count.parallel.lane.queue.capacity}") int queueCapacity,
+                               @Value("${kafka.consumer.virtual.threads.enabled}") boolean virtualThreadsEnabled) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = "post-count-lane-" + i;
+            ThreadFactory threadFactory = virtualThreadsEnabled
+                    ? new VirtualThreadTaskExecutor(threadName + "-").getVirtualThreadFactory()
+                    : runnable -> new Thread(runnable, threadName);
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), threadFactory,
+                    (runnable, executor) -> {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Lane " + threadName + " is shut down");
+                        }
+                        try {
+                            executor.getQueue().put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting for lane " + threadName, e);
+                        }
+                    });
+        }
+    }
+
+    public void execute(String key, Runnable task) {
+        lanes[Math.floorMod(Objects.hashCode(key), lanes.length)].execute(task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Lane did not drain in time, {} tasks pending", lane.getQueue().size());
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.igot.cb.kafka.retry;
+
+import com.igot.cb.kafka.config.CounterRegistry;
+import com.igot.cb.kafka.event.PostCountEvent;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hands a counter event that failed on the main topic to the entry topic of its retry chain,
+ * so the main topic keeps moving while the event is retried with backoff.
+ */
+@Component
+@Slf4j
+public class CounterRetryPublisher {
+
+    @Autowired
+    private KafkaTemplate<String, Object> counterRetryKafkaTemplate;
+
+    @Autowired
+    private CounterRegistry counterRegistry;
+
+    public void publish(ConsumerRecord<String, PostCountEvent> data) {
+        ProducerRecord<String, Object> retryRecord = new ProducerRecord<>(counterRegistry.getRetryTopic(data.topic()),
+                data.key(), data.value());
+        retryRecord.headers().add(Constants.COUNTER_SOURCE_TOPIC_HEADER, data.topic().getBytes(StandardCharsets.UTF_8));
+        try {
+            counterRetryKafkaTemplate.send(retryRecord).get(10, TimeUnit.SECONDS);
+            log.info("Counter msg {} handed over to {}", data.value(), retryRecord.topic());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing counter msg for retry", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to publish counter msg for retry: " + data.value(), e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.igot.cb.kafka.retry;
+
+import com.igot.cb.kafka.config.CounterRegistry;
+import com.igot.cb.kafka.event.PostCountEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Drains the dead letter topics of the counter retry chains back onto their source topics,
+ * so the parked events go through the regular pipeline again.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+
+    @Autowired
+    private ConsumerFactory<String, PostCountEvent> consumerFactory;
+
+    @Autowired
+    private KafkaTemplate<String, Object> counterRetryKafkaTemplate;
+
+    @Autowired
+    private CounterRegistry counterRegistry;
+
+    @Value("${kafka.topic.community.discussion.post.count.group}")
+    private String groupId;
+
+    @Value("${kafka.retry.dlt.replay.on.startup}")
+    private boolean replayOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayOnStartup() {
+        if (replayOnStartup) {
+            replayAll();
+        }
+    }
+
+    public long replayAll() {
+        long replayed = 0;
+        for (String topic : counterRegistry.getTopics()) {
+            try {
+                replayed += replay(topic);
+            } catch (Exception e) {
+                log.error("Failed to replay the dead letter topic of {}", topic, e);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Republishes every record currently on the dead letter topic of the source topic and
+     * commits the replayed offsets, returning the number of republished records.
+     */
+    public long replay(String sourceTopic) throws ExecutionException, InterruptedException {
+        String deadLetterTopic = counterRegistry.getDeadLetterTopic(sourceTopic);
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        long replayed = 0;
+        try (Consumer<String, PostCountEvent> consumer =
+                     consumerFactory.createConsumer(groupId + "-dlt-replay", null, null, overrides)) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(deadLetterTopic);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                log.info("Dead letter topic {} does not exist, nothing to replay", deadLetterTopic);
+                return 0;
+            }
+            List<TopicPartition> partitions = partitionInfos.stream()
+                    .map(info -> new TopicPartition(deadLetterTopic, info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            while (partitions.stream().anyMatch(partition -> consumer.position(partition) < endOffsets.get(partition))) {
+                ConsumerRecords<String, PostCountEvent> records = consumer.poll(Duration.ofSeconds(1));
+                for (ConsumerRecord<String, PostCountEvent> data : records) {
+                    if (data.value() == null) {
+                        log.error("Skipping unreadable msg at offset {} of {}-{}", data.offset(), data.topic(), data.partition());
+                        continue;
+                    }
+                    counterRetryKafkaTemplate.send(sourceTopic, data.key(), data.value()).get();
+                    replayed++;
+                }
+                consumer.commitSync();
+            }
+        }
+        log.info("Replayed {} msgs from {} to {}", replayed, deadLetterTopic, sourceTopic);
+        return replayed;
+    }
+}
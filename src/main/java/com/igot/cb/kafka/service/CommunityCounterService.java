@@ -0,0 +1,167 @@
+package com.igot.cb.kafka.service;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.kafka.backpressure.Downstream;
+import com.igot.cb.kafka.backpressure.DownstreamLatencyTracker;
+import com.igot.cb.kafka.config.CounterRegistry;
+import com.igot.cb.pores.cache.CacheService;
+import com.igot.cb.pores.cache.SearchResultCacheService;
+import com.igot.cb.pores.elasticsearch.reindex.CommunityIndexRouter;
+import com.igot.cb.pores.elasticsearch.service.EsFieldProjector;
+import com.igot.cb.pores.elasticsearch.service.EsUtilService;
+import com.igot.cb.pores.repository.CommunityEngagementRepository;
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies merged counter deltas to a community with one Postgres update and propagates
+ * the resulting document to elasticsearch and redis.
+ */
+@Service
+@Slf4j
+public class CommunityCounterService {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private CommunityEngagementRepository communityEngagementRepository;
+
+    @Autowired
+    private EsUtilService esUtilService;
+
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private DownstreamLatencyTracker downstreamLatencyTracker;
+
+    @Autowired
+    private CounterRegistry counterRegistry;
+
+    @Autowired
+    private EsFieldProjector esFieldProjector;
+
+    @Autowired
+    private SearchResultCacheService searchResultCacheService;
+
+    @Autowired
+    private CommunityIndexRouter communityIndexRouter;
+
+    public void applyCounterDeltas(String communityId, Map<String, Long> counterDeltas) throws JsonProcessingException {
+        String deltas = mapper.writeValueAsString(counterDeltas);
+        Optional<String> updatedData = downstreamLatencyTracker.measure(Downstream.POSTGRES,
+                () -> communityEngagementRepository.incrementCounters(communityId, deltas));
+        if (updatedData.isPresent()) {
+            JsonNode dataNode = mapper.readTree(updatedData.get());
+            Map<String, Object> document = esFieldProjector.project(dataNode, cbServerProperties.getElasticCommunityJsonPath());
+            Map<String, Object> counters = counterFields(dataNode);
+            List<CompletableFuture<BulkResponseItem>> esUpdates = new ArrayList<>();
+            for (String index : communityIndexRouter.getWriteIndices()) {
+                esUpdates.add(esUtilService.updateDocumentFieldsAsync(index, communityId, counters, document,
+                        cbServerProperties.getElasticCommunityJsonPath()));
+            }
+            CompletableFuture.allOf(esUpdates.toArray(new CompletableFuture[0]))
+                    .whenComplete((ignored, failure) -> {
+                        if (failure != null) {
+                            log.error("Failed to update the counters of community {} in elasticsearch", communityId, failure);
+                        }
+                        searchResultCacheService.invalidate(List.of(communityId));
+                    });
+            cacheService.putCache(Constants.REDIS_KEY_PREFIX + "community:" + communityId, dataNode);
+            cacheService.deleteCache(Constants.CATEGORY_LIST_ALL_REDIS_KEY_PREFIX);
+        }
+    }
+
+    /**
+     * Applies the counter deltas of many communities in a single Postgres statement and returns
+     * the updated communities, which still have to be passed to {@link #propagate(List)}.
+     */
+    public List<CommunityEngagementRepository.CommunityData> applyCounterDeltas(
+            Map<String, Map<String, Long>> communityDeltas) throws JsonProcessingException {
+        log.info("Applying counter deltas for {} communities", communityDeltas.size());
+        String deltas = mapper.writeValueAsString(communityDeltas);
+        return downstreamLatencyTracker.measure(Downstream.POSTGRES,
+                () -> communityEngagementRepository.incrementCountersInBulk(deltas));
+    }
+
+    public void propagate(List<CommunityEngagementRepository.CommunityData> updatedCommunities) {
+        if (updatedCommunities.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Map<String, Object>> documents = new HashMap<>();
+            Map<String, Map<String, Object>> counters = new HashMap<>();
+            Map<String, Object> cacheEntries = new HashMap<>();
+            for (CommunityEngagementRepository.CommunityData community : updatedCommunities) {
+                JsonNode dataNode = mapper.readTree(community.getData());
+                documents.put(community.getCommunityId(),
+                        esFieldProjector.project(dataNode, cbServerProperties.getElasticCommunityJsonPath()));
+                counters.put(community.getCommunityId(), counterFields(dataNode));
+                cacheEntries.put(Constants.REDIS_KEY_PREFIX + "community:" + community.getCommunityId(), dataNode);
+            }
+            cacheService.putCacheAll(cacheEntries);
+            cacheService.deleteCache(Constants.CATEGORY_LIST_ALL_REDIS_KEY_PREFIX);
+            if (downstreamLatencyTracker.measure(Downstream.ELASTICSEARCH,
+                    () -> updateDocumentsFields(counters, documents), BulkResponse::errors).errors()) {
+                log.error("Some community documents failed to update in elasticsearch");
+            }
+            searchResultCacheService.invalidate(counters.keySet());
+        } catch (Exception e) {
+            log.error("Failed to propagate the community counters to elasticsearch and redis", e);
+        }
+    }
+
+    /**
+     * Picks the counters out of the updated community data, so ES gets their absolute values as a
+     * partial update instead of the whole document being reindexed.
+     */
+    private Map<String, Object> counterFields(JsonNode dataNode) {
+        Map<String, Object> counters = new HashMap<>();
+        for (String counterField : counterRegistry.getCounterFields()) {
+            if (dataNode.has(counterField)) {
+                counters.put(counterField, dataNode.get(counterField));
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Writes the counters to every community index that currently takes writes and returns the
+     * last response, which reports errors if any of the writes had one.
+     */
+    private BulkResponse updateDocumentsFields(Map<String, Map<String, Object>> counters,
+                                               Map<String, Map<String, Object>> documents) {
+        try {
+            BulkResponse failed = null;
+            BulkResponse response = null;
+            for (String index : communityIndexRouter.getWriteIndices()) {
+                response = esUtilService.updateDocumentsFields(index, counters, documents,
+                        cbServerProperties.getElasticCommunityJsonPath());
+                if (response.errors()) {
+                    failed = response;
+                }
+            }
+            return failed != null ? failed : response;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.igot.cb.pores.cache;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.kafka.backpressure.Downstream;
+import com.igot.cb.kafka.backpressure.DownstreamLatencyTracker;
 import com.igot.cb.pores.util.Constants;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +10,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Collection;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -17,6 +24,8 @@ public class CacheService {
   private JedisPool jedisPool;
   @Autowired
   private ObjectMapper objectMapper;
+  @Autowired
+  private DownstreamLatencyTracker downstreamLatencyTracker;
 
   @Value("${spring.redis.cacheTtl}")
   private long cacheTtl;
@@ -28,28 +37,113 @@ public class CacheService {
   }
 
   public void putCache(String key, Object object) {
+    long start = System.nanoTime();
     try {
       String data = objectMapper.writeValueAsString(object);
       try (Jedis jedis = jedisPool.getResource()) {
         jedis.set(Constants.REDIS_KEY_PREFIX + key, data);
         jedis.expire(Constants.REDIS_KEY_PREFIX + key, cacheTtl);
       }
+      recordCall(start, false);
+    } catch (Exception e) {
+      recordCall(start, true);
+      log.error("Error while putting data in Redis cache: {} ", e.getMessage());
+    }
+  }
+
+  public void putCacheAll(Map<String, Object> objects) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (Map.Entry<String, Object> entry : objects.entrySet()) {
+        String data = objectMapper.writeValueAsString(entry.getValue());
+        pipeline.set(Constants.REDIS_KEY_PREFIX + entry.getKey(), data);
+        pipeline.expire(Constants.REDIS_KEY_PREFIX + entry.getKey(), cacheTtl);
+      }
+      pipeline.sync();
+      recordCall(start, false);
     } catch (Exception e) {
+      recordCall(start, true);
+      log.error("Error while putting data in Redis cache: {} ", e.getMessage());
+    }
+  }
+
+  /**
+   * Caches only the entries whose key is absent, so an entry written concurrently from a newer
+   * state is not replaced.
+   */
+  public void putCacheAllIfAbsent(Map<String, Object> objects) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (Map.Entry<String, Object> entry : objects.entrySet()) {
+        String data = objectMapper.writeValueAsString(entry.getValue());
+        pipeline.set(Constants.REDIS_KEY_PREFIX + entry.getKey(), data, SetParams.setParams().nx().ex(cacheTtl));
+      }
+      pipeline.sync();
+      recordCall(start, false);
+    } catch (Exception e) {
+      recordCall(start, true);
       log.error("Error while putting data in Redis cache: {} ", e.getMessage());
     }
   }
 
   public String getCache(String key) {
-    try {
-      return getJedis().get(Constants.REDIS_KEY_PREFIX + key);
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      String value = jedis.get(Constants.REDIS_KEY_PREFIX + key);
+      recordCall(start, false);
+      return value;
     } catch (Exception e) {
+      recordCall(start, true);
       return null;
     }
   }
 
+  public boolean exists(String key) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      boolean exists = jedis.exists(Constants.REDIS_KEY_PREFIX + key);
+      recordCall(start, false);
+      return exists;
+    } catch (Exception e) {
+      recordCall(start, true);
+      log.error("Error while reading data from Redis cache: {} ", e.getMessage());
+      return false;
+    }
+  }
+
+  public void putKeysWithTtl(Collection<String> keys, String value, long ttlMillis) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (String key : keys) {
+        pipeline.psetex(Constants.REDIS_KEY_PREFIX + key, ttlMillis, value);
+      }
+      pipeline.sync();
+      recordCall(start, false);
+    } catch (Exception e) {
+      recordCall(start, true);
+      log.error("Error while putting data in Redis cache: {} ", e.getMessage());
+    }
+  }
+
+  public void putValue(String key, String value) {
+    long start = System.nanoTime();
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.set(Constants.REDIS_KEY_PREFIX + key, value);
+      recordCall(start, false);
+    } catch (Exception e) {
+      recordCall(start, true);
+      log.error("Error while putting data in Redis cache: {} ", e.getMessage());
+    }
+  }
+
   public Long deleteCache(String key) {
+    long start = System.nanoTime();
     try (Jedis jedis = jedisPool.getResource()) {
       Long result = jedis.del(Constants.REDIS_KEY_PREFIX + key);
+      recordCall(start, false);
       if (result == 1) {
         log.info("Field {} deleted successfully from key {}.", key);
       } else {
@@ -57,8 +151,17 @@ public class CacheService {
       }
       return result;
     } catch (Exception e) {
+      recordCall(start, true);
       log.error("Error while deleting data from Redis cache: {} ", e.getMessage());
       return null;
     }
   }
+
+  /**
+   * Reports the round trip to the backpressure controller, the errors swallowed here are
+   * otherwise invisible to it.
+   */
+  private void recordCall(long start, boolean failed) {
+    downstreamLatencyTracker.record(Downstream.REDIS, System.nanoTime() - start, failed);
+  }
 }
@@ -0,0 +1,234 @@
+package com.igot.cb.pores.cache;
+
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.elasticsearch.dto.SearchResult;
+import com.igot.cb.pores.elasticsearch.service.SearchCriteriaHasher;
+import com.igot.cb.pores.util.Constants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Read-through Redis cache of search result pages. Each cached page is tagged with the
+ * communityIds it contains, so an update to a community evicts only the pages showing it.
+ */
+@Service
+@Slf4j
+public class SearchResultCacheService {
+
+    private static final String RESULT_KEY_PREFIX = Constants.REDIS_KEY_PREFIX + "search:result:";
+
+    private static final String TAG_KEY_PREFIX = Constants.REDIS_KEY_PREFIX + "search:tag:";
+
+    @Autowired
+    private RedisTemplate<String, SearchResult> redisTemplateForSearchResult;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${search.result.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${search.result.cache.ttl.seconds}")
+    private long ttlSeconds;
+
+    @Value("${search.result.cache.invalidation.delay.ms}")
+    private long invalidationDelayMs;
+
+    private final ExecutorService asyncCacheCalls;
+
+    private final ScheduledExecutorService delayedEvictions = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-result-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SearchResultCacheService(@Value("${search.result.cache.async.threads}") int asyncThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.asyncCacheCalls = Executors.newFixedThreadPool(asyncThreads, runnable -> {
+            Thread thread = new Thread(runnable, "search-result-cache-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SearchResult getOrLoad(String esIndexName, SearchCriteria searchCriteria, Supplier<SearchResult> loader) {
+        if (!isCacheable(searchCriteria)) {
+            return loader.get();
+        }
+        String key = key(esIndexName, searchCriteria);
+        SearchResult cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        SearchResult result = loader.get();
+        if (result != null) {
+            put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #getOrLoad}, for a loader that completes the search asynchronously. The Redis
+     * lookup and write run on the cache's own threads, neither on the caller's nor on the ES client's
+     * I/O threads.
+     */
+    public CompletableFuture<SearchResult> getOrLoadAsync(String esIndexName, SearchCriteria searchCriteria,
+                                                          Supplier<CompletableFuture<SearchResult>> loader) {
+        if (!isCacheable(searchCriteria)) {
+            return loader.get();
+        }
+        String key = key(esIndexName, searchCriteria);
+        return CompletableFuture.supplyAsync(() -> get(key), asyncCacheCalls)
+                .thenCompose(cached -> cached != null ? CompletableFuture.completedFuture(cached)
+                        : loader.get().whenComplete((result, failure) -> {
+                            if (result != null) {
+                                asyncCacheCalls.execute(() -> put(key, result));
+                            }
+                        }));
+    }
+
+    private boolean isCacheable(SearchCriteria searchCriteria) {
+        return enabled && !searchCriteria.isCursorPaging() && searchCriteria.getCursor() == null;
+    }
+
+    private String key(String esIndexName, SearchCriteria searchCriteria) {
+        return RESULT_KEY_PREFIX + esIndexName + ":" + SearchCriteriaHasher.hash(searchCriteria, List.of());
+    }
+
+    private SearchResult get(String key) {
+        try {
+            return redisTemplateForSearchResult.opsForValue().get(key);
+        } catch (Exception e) {
+            log.error("Error while reading search result from Redis cache: {} ", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Evicts every cached page that contains one of the communities, now and again once the index
+     * has refreshed, since a search running before the refresh can cache the page from before the write.
+     */
+    public void invalidate(Collection<String> communityIds) {
+        if (!enabled || communityIds.isEmpty()) {
+            return;
+        }
+        evict(communityIds);
+        scheduleAfterRefresh(() -> evict(communityIds));
+    }
+
+    /**
+     * Evicts every cached page of the index, for writes that do not tell which communities they changed.
+     */
+    public void invalidateIndex(String esIndexName) {
+        if (!enabled) {
+            return;
+        }
+        evictIndex(esIndexName);
+        scheduleAfterRefresh(() -> evictIndex(esIndexName));
+    }
+
+    private void scheduleAfterRefresh(Runnable eviction) {
+        try {
+            delayedEvictions.schedule(eviction, invalidationDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Skipping the delayed search result eviction while shutting down");
+        }
+    }
+
+    private void evictIndex(String esIndexName) {
+        try (Cursor<String> keys = stringRedisTemplate.scan(
+                ScanOptions.scanOptions().match(RESULT_KEY_PREFIX + esIndexName + ":*").count(500).build())) {
+            List<String> resultKeys = new ArrayList<>();
+            keys.forEachRemaining(resultKeys::add);
+            if (!resultKeys.isEmpty()) {
+                stringRedisTemplate.delete(resultKeys);
+            }
+        } catch (Exception e) {
+            log.error("Error while invalidating search results in Redis cache: {} ", e.getMessage());
+        }
+    }
+
+    private void evict(Collection<String> communityIds) {
+        try {
+            List<String> tagKeys = new ArrayList<>();
+            Set<String> resultKeys = new LinkedHashSet<>();
+            for (String communityId : communityIds) {
+                String tagKey = TAG_KEY_PREFIX + communityId;
+                tagKeys.add(tagKey);
+                Set<String> members = stringRedisTemplate.opsForSet().members(tagKey);
+                if (members != null) {
+                    resultKeys.addAll(members);
+                }
+            }
+            resultKeys.addAll(tagKeys);
+            stringRedisTemplate.delete(resultKeys);
+        } catch (Exception e) {
+            log.error("Error while invalidating search results in Redis cache: {} ", e.getMessage());
+        }
+    }
+
+    private void put(String key, SearchResult result) {
+        try {
+            Duration ttl = Duration.ofSeconds(ttlSeconds);
+            redisTemplateForSearchResult.opsForValue().set(key, result, ttl);
+            if (result.getData() == null) {
+                return;
+            }
+            Set<String> tagKeys = new LinkedHashSet<>();
+            for (Map<String, Object> document : result.getData()) {
+                Object communityId = document == null ? null : document.get(Constants.COMMUNITY_ID);
+                if (communityId != null) {
+                    tagKeys.add(TAG_KEY_PREFIX + communityId);
+                }
+            }
+            if (tagKeys.isEmpty()) {
+                return;
+            }
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> stringOperations = (RedisOperations<String, String>) operations;
+                    for (String tagKey : tagKeys) {
+                        stringOperations.opsForSet().add(tagKey, key);
+                        stringOperations.expire(tagKey, ttl);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error while putting search result in Redis cache: {} ", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        asyncCacheCalls.shutdown();
+        delayedEvictions.shutdownNow();
+    }
+}
@@ -19,6 +19,9 @@ public class RedisConfig {
   @Value("${spring.redis.port}")
   private int redisPort;
 
+  @Value("${spring.redis.pool.maxWaitMillis}")
+  private long redisPoolMaxWaitMillis;
+
   @Bean
   public JedisPool jedisPool() {
     JedisPoolConfig poolConfig = new JedisPoolConfig();
@@ -32,6 +35,7 @@ public class RedisConfig {
     poolConfig.setTimeBetweenEvictionRuns(Duration.ofMillis(30000));
     poolConfig.setNumTestsPerEvictionRun(3);
     poolConfig.setBlockWhenExhausted(true);
+    poolConfig.setMaxWait(Duration.ofMillis(redisPoolMaxWaitMillis));
     return  new JedisPool(poolConfig, redisHost, redisPort);
   }
 }
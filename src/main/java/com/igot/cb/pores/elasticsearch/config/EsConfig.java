@@ -4,13 +4,17 @@ import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
@@ -31,22 +35,89 @@ public class EsConfig  {
     @Value("${elasticsearch.password}")
     private String elasticsearchPassword;
 
+    @Value("${elasticsearch.connection.max.total}")
+    private int maxConnTotal;
+
+    @Value("${elasticsearch.connection.max.per.route}")
+    private int maxConnPerRoute;
+
+    @Value("${elasticsearch.io.thread.count}")
+    private int ioThreadCount;
+
+    @Value("${elasticsearch.keep.alive.ms}")
+    private long keepAliveMs;
+
+    @Value("${elasticsearch.compression.enabled}")
+    private boolean compressionEnabled;
+
+    @Value("${elasticsearch.connect.timeout.ms}")
+    private int connectTimeoutMs;
+
+    @Value("${elasticsearch.socket.timeout.ms}")
+    private int socketTimeoutMs;
+
+    @Value("${elasticsearch.connection.request.timeout.ms}")
+    private int connectionRequestTimeoutMs;
+
+    @Value("${elasticsearch.product.header.interceptor.enabled}")
+    private boolean productHeaderInterceptorEnabled;
+
     @Bean
-    public ElasticsearchClient elasticsearchClient() {
+    public ElasticsearchTransport elasticsearchTransport() {
         final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
         credentialsProvider.setCredentials(AuthScope.ANY,
                 new UsernamePasswordCredentials(elasticsearchUsername, elasticsearchPassword));
 
         RestClientBuilder builder = RestClient.builder(
                         new HttpHost(elasticsearchHost, elasticsearchPort, "http"))
-                .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider).addInterceptorLast((HttpResponseInterceptor) (response, context) ->
-                        response.addHeader("X-Elastic-Product", "Elasticsearch")))
+                .setCompressionEnabled(compressionEnabled)
+                .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs)
+                        .setConnectionRequestTimeout(connectionRequestTimeoutMs))
+                .setHttpClientConfigCallback(httpClientBuilder -> {
+                    httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider)
+                            .setMaxConnTotal(maxConnTotal)
+                            .setMaxConnPerRoute(maxConnPerRoute)
+                            .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                                    .setIoThreadCount(ioThreadCount)
+                                    .setSoKeepAlive(true)
+                                    .build())
+                            .setKeepAliveStrategy(keepAliveStrategy());
+                    if (productHeaderInterceptorEnabled) {
+                        httpClientBuilder.addInterceptorLast((HttpResponseInterceptor) (response, context) ->
+                                response.addHeader("X-Elastic-Product", "Elasticsearch"));
+                    }
+                    return httpClientBuilder;
+                })
                 .setDefaultHeaders(new org.apache.http.Header[]{
                         new org.apache.http.message.BasicHeader("Content-Type", "application/json"),
                         new org.apache.http.message.BasicHeader("X-Elastic-Product", "Elasticsearch")});
         RestClient restClient = builder.build();
-        ElasticsearchTransport elasticsearchTransport = new RestClientTransport(restClient, new JacksonJsonpMapper());
-        ElasticsearchClient client = new ElasticsearchClient(elasticsearchTransport);
-        return client;
+        return new RestClientTransport(restClient, new JacksonJsonpMapper());
+    }
+
+    /**
+     * Keeps idle connections for the keep-alive the server sends, capped at the configured time so
+     * connections are dropped before a proxy or the server closes them.
+     */
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive < 0 ? keepAliveMs : Math.min(serverKeepAlive, keepAliveMs);
+        };
+    }
+
+    @Bean
+    public ElasticsearchClient elasticsearchClient(ElasticsearchTransport elasticsearchTransport) {
+        return new ElasticsearchClient(elasticsearchTransport);
+    }
+
+    /**
+     * Non-blocking client on the same transport, so both clients share one connection pool.
+     */
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport elasticsearchTransport) {
+        return new ElasticsearchAsyncClient(elasticsearchTransport);
     }
 }
@@ -0,0 +1,53 @@
+package com.igot.cb.pores.elasticsearch.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens pooled connections at startup by sending concurrent pings, so the first bulk and search
+ * requests do not each pay for a TCP and TLS handshake.
+ */
+@Component
+@Slf4j
+public class EsConnectionWarmer {
+
+    @Autowired
+    private ElasticsearchAsyncClient elasticsearchAsyncClient;
+
+    @Value("${elasticsearch.warmup.connections}")
+    private int warmupConnections;
+
+    @Value("${elasticsearch.connect.timeout.ms}")
+    private long connectTimeoutMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmupConnections <= 0) {
+            return;
+        }
+        List<CompletableFuture<BooleanResponse>> pings = new ArrayList<>();
+        for (int i = 0; i < warmupConnections; i++) {
+            pings.add(elasticsearchAsyncClient.ping());
+        }
+        try {
+            CompletableFuture.allOf(pings.toArray(new CompletableFuture[0]))
+                    .get(connectTimeoutMs, TimeUnit.MILLISECONDS);
+            log.info("Opened {} elasticsearch connections", warmupConnections);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Elasticsearch connection warm-up did not complete: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.igot.cb.pores.elasticsearch.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+/**
+ * Installs the community index template, analysis settings plus the field mapping with its
+ * autocomplete and keyword subfields, so every community index created afterwards gets them.
+ */
+@Component
+@Slf4j
+public class EsIndexTemplateBootstrapper {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    @Value("${elasticsearch.index.template.bootstrap.enabled}")
+    private boolean enabled;
+
+    @Value("${elasticsearch.index.template.name}")
+    private String templateName;
+
+    @Value("${elastic.community.index.settings.json.path}")
+    private String settingsJsonPath;
+
+    @PostConstruct
+    public void bootstrap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            TypeMapping typeMapping = communityMapping();
+            IndexSettings indexSettings = communitySettings();
+            elasticsearchClient.indices().putIndexTemplate(t -> t
+                    .name(templateName)
+                    .indexPatterns(Constants.INDEX_NAME + "*")
+                    .template(tm -> tm.settings(indexSettings).mappings(typeMapping)));
+            log.info("Installed index template {} for {}", templateName, Constants.INDEX_NAME);
+        } catch (Exception e) {
+            log.error("Failed to install index template {}", templateName, e);
+        }
+    }
+
+    public TypeMapping communityMapping() throws IOException {
+        ObjectNode mappings = mapper.createObjectNode();
+        ObjectNode properties = readJson(cbServerProperties.getElasticCommunityJsonPath());
+        properties.fields().forEachRemaining(property -> addKeywordSubfield((ObjectNode) property.getValue()));
+        mappings.set("properties", properties);
+        return TypeMapping.of(m -> m.withJson(new StringReader(mappings.toString())));
+    }
+
+    /**
+     * Filters, sorts and facets query string fields through their {@code .keyword} subfield, as
+     * dynamically mapped indices have it, so every keyword and text field gets one.
+     */
+    private void addKeywordSubfield(ObjectNode property) {
+        String type = property.path("type").asText();
+        if (!"keyword".equals(type) && !"text".equals(type)) {
+            return;
+        }
+        ObjectNode fields = property.has("fields") ? (ObjectNode) property.get("fields") : property.putObject("fields");
+        if (!fields.has("keyword")) {
+            fields.putObject("keyword").put("type", "keyword");
+        }
+    }
+
+    public IndexSettings communitySettings() throws IOException {
+        String settings = readJson(settingsJsonPath).toString();
+        return IndexSettings.of(s -> s.withJson(new StringReader(settings)));
+    }
+
+    private ObjectNode readJson(String path) throws IOException {
+        try (InputStream stream = EsIndexTemplateBootstrapper.class.getResourceAsStream(path)) {
+            if (stream == null) {
+                throw new IOException("Missing resource " + path);
+            }
+            return (ObjectNode) mapper.readTree(stream);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.igot.cb.pores.elasticsearch.config;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default refresh policy of each kind of ES write, parsed once from the configured values
+ * none, false, wait_for or true.
+ */
+@Component
+@Getter
+public class EsRefreshPolicies {
+
+    @Value("${elasticsearch.refresh.policy.index}")
+    private String indexPolicy;
+
+    @Value("${elasticsearch.refresh.policy.update}")
+    private String updatePolicy;
+
+    @Value("${elasticsearch.refresh.policy.delete}")
+    private String deletePolicy;
+
+    @Value("${elasticsearch.refresh.policy.bulk}")
+    private String bulkPolicy;
+
+    private Refresh index;
+
+    private Refresh update;
+
+    private Refresh delete;
+
+    private Refresh bulk;
+
+    @PostConstruct
+    public void init() {
+        index = toRefresh(indexPolicy);
+        update = toRefresh(updatePolicy);
+        delete = toRefresh(deletePolicy);
+        bulk = toRefresh(bulkPolicy);
+    }
+
+    private static Refresh toRefresh(String policy) {
+        if ("none".equalsIgnoreCase(policy)) {
+            return Refresh.False;
+        }
+        for (Refresh refresh : Refresh.values()) {
+            if (refresh.jsonValue().equalsIgnoreCase(policy)) {
+                return refresh;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported elasticsearch refresh policy " + policy);
+    }
+}
@@ -32,4 +32,14 @@ public class SearchCriteria {
     private List<String> facets;
 
     private Map<String, Object> query;
+
+    /**
+     * Starts cursor based paging on a point in time instead of pageNumber offsets.
+     */
+    private boolean cursorPaging;
+
+    /**
+     * Opaque cursor of the next page, as returned in the previous page's result.
+     */
+    private String cursor;
 }
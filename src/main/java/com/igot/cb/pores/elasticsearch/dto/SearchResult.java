@@ -19,4 +19,5 @@ public class SearchResult implements Serializable {
   private List<Map<String, Object>> data;
   private Map<String, List<FacetDTO>> facets;
   private long totalCount;
+  private String nextCursor;
 }
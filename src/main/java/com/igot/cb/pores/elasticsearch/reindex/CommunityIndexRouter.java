@@ -0,0 +1,81 @@
+package com.igot.cb.pores.elasticsearch.reindex;
+
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tells community writers which indices to write to. Searches and writes go through the
+ * community alias, while a rebuild is running writes also go to the index being loaded. The
+ * rebuild target is shared through Redis so every replica dual writes, and each replica re-reads
+ * it at most once per refresh interval.
+ */
+@Component
+@Slf4j
+public class CommunityIndexRouter {
+
+    private static final String REINDEX_TARGET_KEY = Constants.REDIS_KEY_PREFIX + "community:reindex:target";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${elasticsearch.reindex.dual.write.refresh.ms}")
+    private long refreshMs;
+
+    @Value("${elasticsearch.reindex.dual.write.ttl.seconds}")
+    private long ttlSeconds;
+
+    private volatile String reindexTarget;
+
+    private volatile long refreshedAt;
+
+    public List<String> getWriteIndices() {
+        String target = currentTarget();
+        return target == null ? List.of(Constants.INDEX_NAME) : List.of(Constants.INDEX_NAME, target);
+    }
+
+    private String currentTarget() {
+        long now = System.currentTimeMillis();
+        if (now - refreshedAt >= refreshMs) {
+            try {
+                reindexTarget = stringRedisTemplate.opsForValue().get(REINDEX_TARGET_KEY);
+            } catch (Exception e) {
+                log.error("Error while reading the reindex target from Redis: {} ", e.getMessage());
+            }
+            refreshedAt = now;
+        }
+        return reindexTarget;
+    }
+
+    /**
+     * Publishes the target and waits until every replica has re-read it. The target expires
+     * unless renewed, so a crashed rebuild does not leave replicas writing to an abandoned index.
+     */
+    void startDualWrite(String indexName) throws InterruptedException {
+        stringRedisTemplate.opsForValue().set(REINDEX_TARGET_KEY, indexName, Duration.ofSeconds(ttlSeconds));
+        awaitPropagation();
+    }
+
+    void renewDualWrite() {
+        stringRedisTemplate.expire(REINDEX_TARGET_KEY, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * Withdraws the target and waits until no replica writes to it any more.
+     */
+    void stopDualWrite() throws InterruptedException {
+        stringRedisTemplate.delete(REINDEX_TARGET_KEY);
+        awaitPropagation();
+    }
+
+    private void awaitPropagation() throws InterruptedException {
+        refreshedAt = 0;
+        Thread.sleep(2 * refreshMs);
+    }
+}
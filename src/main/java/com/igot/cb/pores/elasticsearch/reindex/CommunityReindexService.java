@@ -0,0 +1,241 @@
+package com.igot.cb.pores.elasticsearch.reindex;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.elasticsearch.config.EsIndexTemplateBootstrapper;
+import com.igot.cb.pores.elasticsearch.service.EsUtilService;
+import com.igot.cb.pores.repository.CommunityEngagementRepository;
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the community index without taking search offline. A new versioned index is created
+ * from the field mapping, bulk loaded from Postgres by parallel keyset readers over communityId
+ * ranges while live counter updates on every replica are written to both indices, and then the
+ * community alias is swapped to it in one atomic alias update.
+ */
+@Service
+@Slf4j
+public class CommunityReindexService {
+
+    private static final String VERSION_SEPARATOR = "_v";
+
+    private static final TypeReference<Map<String, Object>> DOCUMENT_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private EsUtilService esUtilService;
+
+    @Autowired
+    private EsIndexTemplateBootstrapper esIndexTemplateBootstrapper;
+
+    @Autowired
+    private CommunityEngagementRepository communityEngagementRepository;
+
+    @Autowired
+    private CommunityIndexRouter communityIndexRouter;
+
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    @Value("${elasticsearch.reindex.slices}")
+    private int slices;
+
+    @Value("${elasticsearch.reindex.page.size}")
+    private int pageSize;
+
+    @Value("${elasticsearch.reindex.delete.old.indices}")
+    private boolean deleteOldIndices;
+
+    @Value("${elasticsearch.reindex.on.startup}")
+    private boolean reindexOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reindexOnStartup() {
+        if (reindexOnStartup) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    reindex();
+                } catch (Exception e) {
+                    log.error("Startup reindex of {} failed", Constants.INDEX_NAME, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs a full rebuild and returns the name of the index the alias points to afterwards.
+     */
+    public String reindex() throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A reindex of " + Constants.INDEX_NAME + " is already running");
+        }
+        String newIndex = Constants.INDEX_NAME + VERSION_SEPARATOR + System.currentTimeMillis();
+        boolean dualWriting = false;
+        try {
+            checkConcreteIndexCanBeReplaced();
+            elasticsearchClient.indices().create(c -> {
+                try {
+                    return c.index(newIndex)
+                            .settings(esIndexTemplateBootstrapper.communitySettings())
+                            .mappings(esIndexTemplateBootstrapper.communityMapping());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read the community index mapping", e);
+                }
+            });
+            esUtilService.beginBulkLoad(newIndex);
+            communityIndexRouter.startDualWrite(newIndex);
+            dualWriting = true;
+            long loaded = load(newIndex);
+            esUtilService.endBulkLoad(newIndex);
+            communityIndexRouter.renewDualWrite();
+            swapAlias(newIndex);
+            log.info("Reindexed {} communities into {}", loaded, newIndex);
+            return newIndex;
+        } catch (Exception e) {
+            log.error("Reindex into {} failed, dropping it", newIndex, e);
+            if (dualWriting) {
+                // stop the replicas writing to the index first, an upsert would create it again
+                communityIndexRouter.stopDualWrite();
+                dualWriting = false;
+            }
+            elasticsearchClient.indices().delete(d -> d.index(newIndex).ignoreUnavailable(true));
+            throw e;
+        } finally {
+            if (dualWriting) {
+                communityIndexRouter.stopDualWrite();
+            }
+            running.set(false);
+        }
+    }
+
+    private long load(String newIndex) throws Exception {
+        List<String> upperBounds = communityEngagementRepository.findSliceUpperBounds(slices);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, upperBounds.size()),
+                runnable -> new Thread(runnable, "community-reindex-" + threadCount.incrementAndGet()));
+        AtomicLong loaded = new AtomicLong();
+        try {
+            List<CompletableFuture<Void>> sliceLoads = new ArrayList<>();
+            String lowerBound = "";
+            for (String upperBound : upperBounds) {
+                String sliceLowerBound = lowerBound;
+                sliceLoads.add(CompletableFuture.runAsync(() ->
+                        loaded.addAndGet(loadSlice(newIndex, sliceLowerBound, upperBound)), readers));
+                lowerBound = upperBound;
+            }
+            CompletableFuture.allOf(sliceLoads.toArray(new CompletableFuture[0])).join();
+        } finally {
+            readers.shutdownNow();
+        }
+        return loaded.get();
+    }
+
+    /**
+     * Loads the communities with an id in (lowerBound, upperBound] page by page.
+     */
+    private long loadSlice(String newIndex, String lowerBound, String upperBound) {
+        long loaded = 0;
+        String after = lowerBound;
+        while (true) {
+            List<CommunityEngagementRepository.CommunityData> page =
+                    communityEngagementRepository.findActivePage(after, upperBound, pageSize);
+            if (page.isEmpty()) {
+                return loaded;
+            }
+            Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
+            try {
+                for (CommunityEngagementRepository.CommunityData community : page) {
+                    documents.put(community.getCommunityId(), mapper.readValue(community.getData(), DOCUMENT_TYPE));
+                }
+                BulkResponse response = esUtilService.saveAllIfAbsent(newIndex, documents,
+                        cbServerProperties.getElasticCommunityJsonPath());
+                for (BulkResponseItem item : response.items()) {
+                    // 409 means a live update created the document first, which is newer than this read
+                    if (item.error() != null && item.status() != 409) {
+                        throw new IllegalStateException("Failed to load community " + item.id() + ": " + item.error().reason());
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load communities after " + after, e);
+            }
+            loaded += page.size();
+            after = page.get(page.size() - 1).getCommunityId();
+            communityIndexRouter.renewDualWrite();
+        }
+    }
+
+    private boolean isConcreteIndex() throws IOException {
+        return !elasticsearchClient.indices().existsAlias(e -> e.name(Constants.INDEX_NAME)).value()
+                && elasticsearchClient.indices().exists(e -> e.index(Constants.INDEX_NAME)).value();
+    }
+
+    /**
+     * The alias can only take the name of a concrete index by deleting that index, so the first
+     * rebuild is refused unless old indices may be deleted.
+     */
+    private void checkConcreteIndexCanBeReplaced() throws IOException {
+        if (!deleteOldIndices && isConcreteIndex()) {
+            throw new IllegalStateException(Constants.INDEX_NAME + " is a concrete index, replacing it with the alias"
+                    + " deletes it. Migrate it to a versioned index behind the alias, or set"
+                    + " elasticsearch.reindex.delete.old.indices=true to have the rebuild delete it.");
+        }
+    }
+
+    /**
+     * Points the alias at the new index in one atomic update, removing it from the indices it pointed
+     * to or, on the first run and only when old indices may be deleted, removing the concrete index
+     * that still carries the alias name.
+     */
+    private void swapAlias(String newIndex) throws IOException {
+        List<Action> actions = new ArrayList<>();
+        Set<String> oldIndices = Set.of();
+        if (elasticsearchClient.indices().existsAlias(e -> e.name(Constants.INDEX_NAME)).value()) {
+            oldIndices = elasticsearchClient.indices().getAlias(g -> g.name(Constants.INDEX_NAME)).result().keySet();
+            for (String oldIndex : oldIndices) {
+                actions.add(Action.of(a -> a.remove(r -> r.index(oldIndex).alias(Constants.INDEX_NAME))));
+            }
+        } else if (isConcreteIndex()) {
+            checkConcreteIndexCanBeReplaced();
+            actions.add(Action.of(a -> a.removeIndex(r -> r.index(Constants.INDEX_NAME))));
+        }
+        actions.add(Action.of(a -> a.add(ad -> ad.index(newIndex).alias(Constants.INDEX_NAME).isWriteIndex(true))));
+        elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+        log.info("Alias {} now points to {}", Constants.INDEX_NAME, newIndex);
+        if (deleteOldIndices) {
+            for (String oldIndex : oldIndices) {
+                elasticsearchClient.indices().delete(d -> d.index(oldIndex).ignoreUnavailable(true));
+            }
+        }
+    }
+}
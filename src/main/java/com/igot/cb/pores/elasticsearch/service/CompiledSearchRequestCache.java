@@ -0,0 +1,93 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of compiled search requests keyed by a hash of the canonical search criteria, leaving out
+ * paging. Cached requests carry no index, paging or cursor, callers apply those on a copy.
+ */
+@Component
+@Slf4j
+public class CompiledSearchRequestCache {
+
+    private static final List<String> PAGING_FIELDS = List.of("pageNumber", "pageSize", "cursorPaging", "cursor");
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final Map<String, SearchRequest> compiledRequests;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public CompiledSearchRequestCache(@Value("${elasticsearch.search.compiled.cache.max.entries}") int maxEntries) {
+        this.compiledRequests = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SearchRequest> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public SearchRequest get(SearchCriteria searchCriteria, Supplier<SearchRequest> compiler) {
+        String key = SearchCriteriaHasher.hash(searchCriteria, PAGING_FIELDS);
+        SearchRequest compiled;
+        lock.lock();
+        try {
+            compiled = compiledRequests.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (compiled != null) {
+            hits.increment();
+            return compiled;
+        }
+        misses.increment();
+        compiled = compiler.get();
+        lock.lock();
+        try {
+            compiledRequests.put(key, compiled);
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Compiled search request {}, cache hits {} misses {}", key, hits.sum(), misses.sum());
+        return compiled;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return compiledRequests.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            compiledRequests.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
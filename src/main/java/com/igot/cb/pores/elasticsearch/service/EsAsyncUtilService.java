@@ -0,0 +1,27 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.DeleteResponse;
+import co.elastic.clients.elasticsearch.core.IndexResponse;
+import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.elasticsearch.dto.SearchResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface EsAsyncUtilService {
+  CompletableFuture<IndexResponse> addDocument(String esIndexName, String id, Map<String, Object> document,
+      String jsonFilePath);
+
+  CompletableFuture<UpdateResponse<Object>> updateDocumentFields(String index, String entityId,
+      Map<String, Object> fields, Map<String, Object> upsertDocument, String jsonFilePath);
+
+  CompletableFuture<DeleteResponse> deleteDocument(String documentId, String esIndexName);
+
+  CompletableFuture<SearchResult> searchDocuments(String esIndexName, SearchCriteria searchCriteria);
+
+  CompletableFuture<BulkResponse> bulk(List<BulkOperation> operations);
+}
@@ -0,0 +1,147 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.DeleteRequest;
+import co.elastic.clients.elasticsearch.core.DeleteResponse;
+import co.elastic.clients.elasticsearch.core.IndexRequest;
+import co.elastic.clients.elasticsearch.core.IndexResponse;
+import co.elastic.clients.elasticsearch.core.UpdateRequest;
+import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.igot.cb.pores.cache.SearchResultCacheService;
+import com.igot.cb.pores.elasticsearch.config.EsRefreshPolicies;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.elasticsearch.dto.SearchResult;
+import com.igot.cb.pores.exceptions.CustomException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link EsUtilService}. Requests are sent on the async client and
+ * complete on its I/O threads, so the caller can overlap them with other work. At most a configured
+ * number of requests are in flight, a request beyond that fails at once without blocking the caller.
+ */
+@Service
+@Slf4j
+public class EsAsyncUtilServiceImpl implements EsAsyncUtilService {
+
+    @Autowired
+    private ElasticsearchAsyncClient elasticsearchAsyncClient;
+    @Autowired
+    private EsUtilService esUtilService;
+    @Autowired
+    private EsFieldProjector esFieldProjector;
+    @Autowired
+    private EsRefreshPolicies esRefreshPolicies;
+    @Autowired
+    private SearchResultCacheService searchResultCacheService;
+    @Value("${elasticsearch.update.retry.on.conflict}")
+    private int retryOnConflict;
+    @Value("${elasticsearch.async.max.inflight.requests}")
+    private int maxInFlightRequests;
+    private Semaphore inFlightRequests;
+
+    @PostConstruct
+    public void init() {
+        inFlightRequests = new Semaphore(maxInFlightRequests);
+    }
+
+    @Override
+    public CompletableFuture<IndexResponse> addDocument(String esIndexName, String id, Map<String, Object> document,
+                                                        String jsonFilePath) {
+        return send(() -> elasticsearchAsyncClient.index(new IndexRequest.Builder<Map<String, Object>>()
+                .index(esIndexName)
+                .id(id)
+                .document(esFieldProjector.project(document, jsonFilePath))
+                .refresh(esRefreshPolicies.getIndex())
+                .build()));
+    }
+
+    /**
+     * Sends only the given fields as a partial update, see {@link EsUtilService#updateDocumentFields}.
+     */
+    @Override
+    public CompletableFuture<UpdateResponse<Object>> updateDocumentFields(String index, String entityId,
+                                                                          Map<String, Object> fields,
+                                                                          Map<String, Object> upsertDocument,
+                                                                          String jsonFilePath) {
+        UpdateRequest.Builder<Object, Map<String, Object>> updateRequest = new UpdateRequest.Builder<Object, Map<String, Object>>()
+                .index(index)
+                .id(entityId)
+                .doc(esFieldProjector.project(fields, jsonFilePath))
+                .detectNoop(true)
+                .retryOnConflict(retryOnConflict)
+                .refresh(esRefreshPolicies.getUpdate());
+        if (upsertDocument != null) {
+            updateRequest.upsert(esFieldProjector.project(upsertDocument, jsonFilePath));
+        }
+        return send(() -> elasticsearchAsyncClient.update(updateRequest.build(), Object.class));
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> deleteDocument(String documentId, String esIndexName) {
+        return send(() -> elasticsearchAsyncClient.delete(new DeleteRequest.Builder()
+                .index(esIndexName)
+                .id(documentId)
+                .refresh(esRefreshPolicies.getDelete())
+                .build()))
+                .whenComplete((response, failure) -> searchResultCacheService.invalidate(List.of(documentId)));
+    }
+
+    /**
+     * Offset paged search through the search result cache. Cursor paging keeps a point in time open
+     * across pages and is only served by the blocking {@link EsUtilService#searchDocuments}.
+     */
+    @Override
+    public CompletableFuture<SearchResult> searchDocuments(String esIndexName, SearchCriteria searchCriteria) {
+        if (searchCriteria == null) {
+            log.error("Search criteria body is missing");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (searchCriteria.isCursorPaging() || searchCriteria.getCursor() != null) {
+            return CompletableFuture.failedFuture(new CustomException("search cursor",
+                    "Cursor paging is not supported by the async search", HttpStatus.BAD_REQUEST));
+        }
+        return searchResultCacheService.getOrLoadAsync(esIndexName, searchCriteria,
+                () -> send(() -> elasticsearchAsyncClient.search(
+                                esUtilService.buildPagedSearchRequest(esIndexName, searchCriteria), Object.class))
+                        .thenApply(response -> esUtilService.toSearchResult(response, searchCriteria)));
+    }
+
+    @Override
+    public CompletableFuture<BulkResponse> bulk(List<BulkOperation> operations) {
+        return send(() -> elasticsearchAsyncClient.bulk(BulkRequest.of(b -> b
+                .operations(operations)
+                .refresh(esRefreshPolicies.getBulk()))));
+    }
+
+    /**
+     * Takes an in-flight slot if one is free, sends the request and frees the slot once it completes.
+     */
+    private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+        if (!inFlightRequests.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CustomException("elasticsearch",
+                    "Too many elasticsearch requests in flight", HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            inFlightRequests.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((result, failure) -> inFlightRequests.release());
+    }
+}
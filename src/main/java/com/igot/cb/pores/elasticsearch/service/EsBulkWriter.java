@@ -0,0 +1,132 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.igot.cb.kafka.backpressure.Downstream;
+import com.igot.cb.kafka.backpressure.DownstreamLatencyTracker;
+import com.igot.cb.pores.elasticsearch.config.EsRefreshPolicies;
+import com.igot.cb.pores.exceptions.CustomException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived bulk writer that batches submitted operations and flushes them by operation count,
+ * byte size or interval, whichever comes first. Submitting blocks while the maximum number of
+ * bulk requests is in flight. Each operation's outcome is reported through its future.
+ * Bulk requests in flight together may complete in any order, so writers of absolute values
+ * such as the community counters need a single request in flight.
+ */
+@Component
+@Slf4j
+public class EsBulkWriter {
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private DownstreamLatencyTracker downstreamLatencyTracker;
+
+    @Value("${elasticsearch.bulk.writer.max.operations}")
+    private int maxOperations;
+
+    @Value("${elasticsearch.bulk.writer.max.size.bytes}")
+    private long maxSizeBytes;
+
+    @Value("${elasticsearch.bulk.writer.flush.interval.ms}")
+    private long flushIntervalMs;
+
+    @Value("${elasticsearch.bulk.writer.max.concurrent.requests}")
+    private int maxConcurrentRequests;
+
+    @Autowired
+    private EsRefreshPolicies esRefreshPolicies;
+
+    private BulkIngester<CompletableFuture<BulkResponseItem>> bulkIngester;
+
+    @PostConstruct
+    public void init() {
+        bulkIngester = BulkIngester.of(b -> b
+                .client(elasticsearchClient)
+                .maxOperations(maxOperations)
+                .maxSize(maxSizeBytes)
+                .maxConcurrentRequests(maxConcurrentRequests)
+                .flushInterval(flushIntervalMs, TimeUnit.MILLISECONDS)
+                .globalSettings(settings -> settings.refresh(esRefreshPolicies.getBulk()))
+                .listener(new FutureCompletingListener()));
+    }
+
+    public CompletableFuture<BulkResponseItem> submit(BulkOperation operation) {
+        CompletableFuture<BulkResponseItem> result = new CompletableFuture<>();
+        bulkIngester.add(operation, result);
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        bulkIngester.close();
+    }
+
+    /**
+     * Completes the operation futures and records the round trip of each bulk request, from the
+     * moment it is sent rather than when its operations were queued.
+     */
+    private class FutureCompletingListener implements BulkListener<CompletableFuture<BulkResponseItem>> {
+
+        private final Map<Long, Long> sendTimes = new ConcurrentHashMap<>();
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request, List<CompletableFuture<BulkResponseItem>> contexts) {
+            log.debug("Sending bulk request {} with {} operations", executionId, contexts.size());
+            sendTimes.put(executionId, System.nanoTime());
+        }
+
+        private void recordRoundTrip(long executionId, boolean failed) {
+            Long sentAt = sendTimes.remove(executionId);
+            if (sentAt != null) {
+                downstreamLatencyTracker.record(Downstream.ELASTICSEARCH, System.nanoTime() - sentAt, failed);
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<CompletableFuture<BulkResponseItem>> contexts,
+                              BulkResponse response) {
+            List<BulkResponseItem> items = response.items();
+            recordRoundTrip(executionId, items.stream()
+                    .anyMatch(item -> item.status() == HttpStatus.TOO_MANY_REQUESTS.value() || item.status() >= 500));
+            for (int i = 0; i < contexts.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (item.error() == null) {
+                    contexts.get(i).complete(item);
+                } else {
+                    HttpStatus status = HttpStatus.resolve(item.status());
+                    contexts.get(i).completeExceptionally(new CustomException(item.error().type(),
+                            item.error().reason(), status == null ? HttpStatus.INTERNAL_SERVER_ERROR : status));
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<CompletableFuture<BulkResponseItem>> contexts,
+                              Throwable failure) {
+            recordRoundTrip(executionId, true);
+            log.error("Bulk request {} with {} operations failed", executionId, contexts.size(), failure);
+            contexts.forEach(context -> context.completeExceptionally(failure));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.exceptions.CustomException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Projects documents onto the fields listed in an ES required fields mapping file. Each mapping
+ * file is read once into an immutable key set, {@link #reload()} drops them after a change.
+ */
+@Component
+@Slf4j
+public class EsFieldProjector {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, Set<String>> requiredFieldsByPath = new ConcurrentHashMap<>();
+
+    public Set<String> getRequiredFields(String jsonFilePath) {
+        return requiredFieldsByPath.computeIfAbsent(jsonFilePath, this::loadRequiredFields);
+    }
+
+    public Map<String, Object> project(Map<String, Object> document, String jsonFilePath) {
+        Set<String> requiredFields = getRequiredFields(jsonFilePath);
+        Map<String, Object> projected = new LinkedHashMap<>();
+        document.forEach((key, value) -> {
+            if (requiredFields.contains(key)) {
+                projected.put(key, value);
+            }
+        });
+        return projected;
+    }
+
+    /**
+     * Projects straight from the tree, the values stay {@link JsonNode}s which the ES client
+     * serializes as they are.
+     */
+    public Map<String, Object> project(JsonNode document, String jsonFilePath) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String key : getRequiredFields(jsonFilePath)) {
+            JsonNode value = document.get(key);
+            if (value != null) {
+                projected.put(key, value);
+            }
+        }
+        return projected;
+    }
+
+    public void reload() {
+        requiredFieldsByPath.clear();
+    }
+
+    private Set<String> loadRequiredFields(String jsonFilePath) {
+        try (InputStream schemaStream = EsFieldProjector.class.getResourceAsStream(jsonFilePath)) {
+            if (schemaStream == null) {
+                throw new CustomException("ES field mapping", "Missing ES field mapping file " + jsonFilePath,
+                        HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            Set<String> requiredFields = new HashSet<>();
+            mapper.readTree(schemaStream).fieldNames().forEachRemaining(requiredFields::add);
+            log.info("Loaded {} required ES fields from {}", requiredFields.size(), jsonFilePath);
+            return Set.copyOf(requiredFields);
+        } catch (IOException e) {
+            throw new CustomException("ES field mapping", "Failed to read ES field mapping file " + jsonFilePath,
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -1,27 +1,83 @@
 package com.igot.cb.pores.elasticsearch.service;
 
+import co.elastic.clients.elasticsearch._types.Refresh;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface EsUtilService {
   String addDocument(String esIndexName, String id, Map<String, Object> document, String jsonFilePath);
 
+  String addDocument(String esIndexName, String id, Map<String, Object> document, String jsonFilePath, Refresh refresh);
+
   String updateDocument(String index, String entityId, Map<String, Object> document, String jsonFilePath);
 
+  String updateDocument(String index, String entityId, Map<String, Object> document, String jsonFilePath, Refresh refresh);
+
+  BulkResponse updateDocuments(String index, Map<String, Map<String, Object>> documents, String jsonFilePath) throws IOException;
+
+  String updateDocumentFields(String index, String entityId, Map<String, Object> fields,
+      Map<String, Object> upsertDocument, String jsonFilePath);
+
+  String updateDocumentFields(String index, String entityId, Map<String, Object> fields,
+      Map<String, Object> upsertDocument, String jsonFilePath, Refresh refresh);
+
+  Map<String, GetResult<Void>> getDocumentVersions(String index, Collection<String> ids) throws IOException;
+
+  BulkResponse updateDocumentsIfUnchanged(String index, Map<String, Map<String, Object>> documents,
+      Map<String, GetResult<Void>> versions, String jsonFilePath) throws IOException;
+
+  BulkResponse updateDocumentsFields(String index, Map<String, Map<String, Object>> fields,
+      Map<String, Map<String, Object>> upsertDocuments, String jsonFilePath) throws IOException;
+
+  CompletableFuture<BulkResponseItem> addDocumentAsync(String esIndexName, String id, Map<String, Object> document,
+      String jsonFilePath);
+
+  CompletableFuture<BulkResponseItem> updateDocumentFieldsAsync(String index, String entityId, Map<String, Object> fields,
+      Map<String, Object> upsertDocument, String jsonFilePath);
+
+  String incrementCounters(String index, String entityId, Map<String, Long> counterDeltas,
+      Map<String, Object> upsertDocument, String jsonFilePath);
+
+  String incrementCounters(String index, String entityId, Map<String, Long> counterDeltas,
+      Map<String, Object> upsertDocument, String jsonFilePath, Refresh refresh);
+
   void deleteDocument(String documentId, String esIndexName);
 
+  void deleteDocument(String documentId, String esIndexName, Refresh refresh);
+
   void deleteDocumentsByCriteria(String esIndexName, Query query);
 
   SearchResult searchDocuments(String esIndexName, SearchCriteria searchCriteria);
 
+  SearchRequest buildPagedSearchRequest(String esIndexName, SearchCriteria searchCriteria);
+
+  SearchResult toSearchResult(SearchResponse<Object> searchResponse, SearchCriteria searchCriteria);
+
+  void streamSearchDocuments(String esIndexName, SearchCriteria searchCriteria, OutputStream outputStream)
+      throws IOException;
+
   boolean isIndexPresent(String indexName);
 
   BulkResponse saveAll(String esIndexName, List<JsonNode> entities) throws IOException;
+
+  BulkResponse saveAllIfAbsent(String esIndexName, Map<String, Map<String, Object>> documents, String jsonFilePath)
+      throws IOException;
+
+  void beginBulkLoad(String indexName) throws IOException;
+
+  void endBulkLoad(String indexName) throws IOException;
 }
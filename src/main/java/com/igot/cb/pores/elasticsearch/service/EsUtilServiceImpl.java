@@ -1,8 +1,12 @@
 package com.igot.cb.pores.elasticsearch.service;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
 import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.Slices;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
 import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
@@ -12,41 +16,105 @@ import co.elastic.clients.elasticsearch._types.aggregations.TermsAggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
 import co.elastic.clients.elasticsearch.core.*;
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
 import co.elastic.clients.elasticsearch.core.search.Hit;
-import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
 import co.elastic.clients.elasticsearch.core.search.SourceConfig;
 import co.elastic.clients.elasticsearch.indices.GetIndexRequest;
 import co.elastic.clients.elasticsearch.indices.GetIndexResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
 import co.elastic.clients.elasticsearch.indices.RefreshRequest;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
 import co.elastic.clients.json.JsonData;
+import co.elastic.clients.util.BinaryData;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.cache.SearchResultCacheService;
 import com.igot.cb.pores.exceptions.CustomException;
 import com.igot.cb.pores.util.Constants;
 import com.igot.cb.pores.elasticsearch.config.EsConfig;
+import com.igot.cb.pores.elasticsearch.config.EsRefreshPolicies;
 import com.igot.cb.pores.elasticsearch.dto.FacetDTO;
 import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
-import com.networknt.schema.JsonSchemaFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class EsUtilServiceImpl implements EsUtilService {
+    private static final String INCREMENT_COUNTERS_SCRIPT =
+            "boolean changed = false;"
+                    + " for (entry in params.deltas.entrySet()) {"
+                    + "   if (entry.getValue() != 0) {"
+                    + "     def current = ctx._source[entry.getKey()];"
+                    + "     ctx._source[entry.getKey()] = (current == null ? 0 : current) + entry.getValue();"
+                    + "     changed = true;"
+                    + "   }"
+                    + " }"
+                    + " if (!changed) { ctx.op = 'none'; }";
+
+    private static final Type TASK_STATUS_TYPE = new TypeReference<Map<String, Object>>() {
+    }.getType();
+    private static final byte[] RAW_RESULT_START = "{\"data\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RAW_RESULT_FACETS = "],\"facets\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RAW_RESULT_TOTAL_COUNT = ",\"totalCount\":".getBytes(StandardCharsets.UTF_8);
+
     private final ElasticsearchClient elasticsearchClient;
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
+    private EsFieldProjector esFieldProjector;
+    @Autowired
+    private EsBulkWriter esBulkWriter;
+    @Autowired
+    private SearchQueryPlanner searchQueryPlanner;
+    @Autowired
+    private CompiledSearchRequestCache compiledSearchRequestCache;
+    @Autowired
+    private SearchResultCacheService searchResultCacheService;
+    @Value("${elasticsearch.update.retry.on.conflict}")
+    private int retryOnConflict;
+    @Autowired
+    private EsRefreshPolicies esRefreshPolicies;
+    @Value("${elasticsearch.delete.by.query.enabled}")
+    private boolean deleteByQueryEnabled;
+    @Value("${elasticsearch.delete.by.query.slices}")
+    private String deleteByQuerySlices;
+    @Value("${elasticsearch.delete.by.query.requests.per.second}")
+    private float deleteByQueryRequestsPerSecond;
+    @Value("${elasticsearch.delete.by.query.poll.interval.ms}")
+    private long deleteByQueryPollIntervalMs;
+    @Value("${elasticsearch.delete.by.query.timeout.ms}")
+    private long deleteByQueryTimeoutMs;
+    @Value("${elasticsearch.delete.batch.size}")
+    private int deleteBatchSize;
+    @Value("${elasticsearch.search.tags.autocomplete.enabled}")
+    private boolean searchTagsAutocompleteEnabled;
+    @Value("${elasticsearch.search.tags.autocomplete.field}")
+    private String searchTagsAutocompleteField;
+    @Value("${elasticsearch.search.pit.keep.alive}")
+    private String pitKeepAlive;
+    @Value("${elasticsearch.bulk.load.restore.refresh.interval}")
+    private String bulkLoadRestoreRefreshInterval;
+    @Value("${elasticsearch.bulk.load.restore.replicas}")
+    private String bulkLoadRestoreReplicas;
+    private final Map<String, BulkLoadSettings> bulkLoadSettings = new ConcurrentHashMap<>();
+    @Autowired
     public EsUtilServiceImpl(ElasticsearchClient elasticsearchClient) {
         this.elasticsearchClient = elasticsearchClient;
     }
@@ -54,25 +122,18 @@ public class EsUtilServiceImpl implements EsUtilService {
     @Override
     public String addDocument(
             String esIndexName, String id, Map<String, Object> document, String JsonFilePath) {
+        return addDocument(esIndexName, id, document, JsonFilePath, esRefreshPolicies.getIndex());
+    }
+
+    @Override
+    public String addDocument(
+            String esIndexName, String id, Map<String, Object> document, String JsonFilePath, Refresh refresh) {
         try {
-            JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-            InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(JsonFilePath);
-            Map<String, Object> map = objectMapper.readValue(schemaStream,
-                    new TypeReference<Map<String, Object>>() {
-                    });
-            Iterator<Entry<String, Object>> iterator = document.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> entry = iterator.next();
-                String key = entry.getKey();
-                if (!map.containsKey(key)) {
-                    iterator.remove();
-                }
-            }
             IndexRequest<Map<String,Object>> indexRequest = new IndexRequest.Builder<Map<String, Object>>()
                     .index(esIndexName)
                     .id(id)
-                    .document(document)
-                    .refresh(Refresh.True)
+                    .document(esFieldProjector.project(document, JsonFilePath))
+                    .refresh(refresh)
                     .build();
             IndexResponse response = elasticsearchClient.index(indexRequest);
             return "Successfully indexed document with id: " + response.result();
@@ -85,25 +146,18 @@ public class EsUtilServiceImpl implements EsUtilService {
     @Override
     public String updateDocument(
             String index, String entityId, Map<String, Object> updatedDocument, String JsonFilePath) {
+        return updateDocument(index, entityId, updatedDocument, JsonFilePath, esRefreshPolicies.getUpdate());
+    }
+
+    @Override
+    public String updateDocument(
+            String index, String entityId, Map<String, Object> updatedDocument, String JsonFilePath, Refresh refresh) {
         try {
-            JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-            InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(JsonFilePath);
-            Map<String, Object> map = objectMapper.readValue(schemaStream,
-                    new TypeReference<Map<String, Object>>() {
-                    });
-            Iterator<Entry<String, Object>> iterator = updatedDocument.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> entry = iterator.next();
-                String key = entry.getKey();
-                if (!map.containsKey(key)) {
-                    iterator.remove();
-                }
-            }
             IndexRequest<Map<String, Object>> indexRequest = new IndexRequest.Builder<Map<String, Object>>()
                     .index(index)
                     .id(entityId)
-                    .document(updatedDocument)
-                    .refresh(Refresh.True)
+                    .document(esFieldProjector.project(updatedDocument, JsonFilePath))
+                    .refresh(refresh)
                     .build();
             IndexResponse response = elasticsearchClient.index(indexRequest);
             return response.result().jsonValue();
@@ -112,59 +166,394 @@ public class EsUtilServiceImpl implements EsUtilService {
         }
     }
 
+    @Override
+    public BulkResponse updateDocuments(
+            String index, Map<String, Map<String, Object>> updatedDocuments, String JsonFilePath) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>();
+        updatedDocuments.forEach((entityId, updatedDocument) -> {
+            operations.add(BulkOperation.of(b -> b
+                    .index(i -> i
+                            .index(index)
+                            .id(entityId)
+                            .document(esFieldProjector.project(updatedDocument, JsonFilePath))
+                    )
+            ));
+        });
+        BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations).refresh(esRefreshPolicies.getBulk()));
+        return elasticsearchClient.bulk(bulkRequest);
+    }
+
+    @Override
+    public String updateDocumentFields(String index, String entityId, Map<String, Object> fields,
+                                       Map<String, Object> upsertDocument, String jsonFilePath) {
+        return updateDocumentFields(index, entityId, fields, upsertDocument, jsonFilePath, esRefreshPolicies.getUpdate());
+    }
+
+    /**
+     * Sends only the given fields as a partial update, which ES skips when no value changed.
+     * When the document does not exist yet the upsert document, if given, is indexed instead.
+     */
+    @Override
+    public String updateDocumentFields(String index, String entityId, Map<String, Object> fields,
+                                       Map<String, Object> upsertDocument, String jsonFilePath, Refresh refresh) {
+        try {
+            UpdateRequest.Builder<Object, Map<String, Object>> updateRequest = new UpdateRequest.Builder<Object, Map<String, Object>>()
+                    .index(index)
+                    .id(entityId)
+                    .doc(esFieldProjector.project(fields, jsonFilePath))
+                    .detectNoop(true)
+                    .retryOnConflict(retryOnConflict)
+                    .refresh(refresh);
+            if (upsertDocument != null) {
+                updateRequest.upsert(esFieldProjector.project(upsertDocument, jsonFilePath));
+            }
+            UpdateResponse<Object> response = elasticsearchClient.update(updateRequest.build(), Object.class);
+            return response.result().jsonValue();
+        } catch (Exception e) {
+            log.error("Issue while updating fields of document {} in es: {}", entityId, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public BulkResponse updateDocumentsFields(String index, Map<String, Map<String, Object>> fields,
+                                              Map<String, Map<String, Object>> upsertDocuments,
+                                              String jsonFilePath) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>();
+        fields.forEach((entityId, documentFields) -> {
+            Map<String, Object> upsertDocument = upsertDocuments.containsKey(entityId)
+                    ? esFieldProjector.project(upsertDocuments.get(entityId), jsonFilePath) : null;
+            operations.add(BulkOperation.of(b -> b
+                    .update(u -> u
+                            .index(index)
+                            .id(entityId)
+                            .retryOnConflict(retryOnConflict)
+                            .action(a -> a
+                                    .doc(esFieldProjector.project(documentFields, jsonFilePath))
+                                    .detectNoop(true)
+                                    .upsert(upsertDocument)
+                            )
+                    )
+            ));
+        });
+        BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations).refresh(esRefreshPolicies.getBulk()));
+        return elasticsearchClient.bulk(bulkRequest);
+    }
+
+    /**
+     * Returns the existing documents among the given ids, with the sequence number and primary
+     * term they are at, without their source.
+     */
+    @Override
+    public Map<String, GetResult<Void>> getDocumentVersions(String index, Collection<String> ids) throws IOException {
+        MgetResponse<Void> response = elasticsearchClient.mget(m -> m
+                .index(index)
+                .ids(new ArrayList<>(ids))
+                .source(s -> s.fetch(false)), Void.class);
+        Map<String, GetResult<Void>> versions = new HashMap<>();
+        response.docs().stream()
+                .filter(item -> item.isResult() && item.result().found())
+                .forEach(item -> versions.put(item.result().id(), item.result()));
+        return versions;
+    }
+
+    /**
+     * Writes each document as a partial update that only applies while the document is still at
+     * the given version, and creates the documents that had none. Items rejected with a conflict
+     * were written after the versions were read and are left as they are.
+     */
+    @Override
+    public BulkResponse updateDocumentsIfUnchanged(String index, Map<String, Map<String, Object>> documents,
+                                                   Map<String, GetResult<Void>> versions,
+                                                   String jsonFilePath) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>();
+        documents.forEach((id, document) -> {
+            Map<String, Object> projected = esFieldProjector.project(document, jsonFilePath);
+            GetResult<Void> version = versions.get(id);
+            if (version == null) {
+                operations.add(BulkOperation.of(b -> b.create(c -> c.index(index).id(id).document(projected))));
+            } else {
+                operations.add(BulkOperation.of(b -> b
+                        .update(u -> u
+                                .index(index)
+                                .id(id)
+                                .ifSeqNo(version.seqNo())
+                                .ifPrimaryTerm(version.primaryTerm())
+                                .action(a -> a.doc(projected).detectNoop(true))
+                        )
+                ));
+            }
+        });
+        BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations).refresh(esRefreshPolicies.getBulk()));
+        return elasticsearchClient.bulk(bulkRequest);
+    }
+
+    @Override
+    public CompletableFuture<BulkResponseItem> addDocumentAsync(String esIndexName, String id,
+                                                                Map<String, Object> document, String jsonFilePath) {
+        Map<String, Object> projected = esFieldProjector.project(document, jsonFilePath);
+        return esBulkWriter.submit(BulkOperation.of(b -> b
+                .index(i -> i
+                        .index(esIndexName)
+                        .id(id)
+                        .document(projected)
+                )
+        ));
+    }
+
+    @Override
+    public CompletableFuture<BulkResponseItem> updateDocumentFieldsAsync(String index, String entityId,
+                                                                         Map<String, Object> fields,
+                                                                         Map<String, Object> upsertDocument,
+                                                                         String jsonFilePath) {
+        Map<String, Object> projectedFields = esFieldProjector.project(fields, jsonFilePath);
+        Map<String, Object> projectedUpsert = upsertDocument == null ? null
+                : esFieldProjector.project(upsertDocument, jsonFilePath);
+        return esBulkWriter.submit(BulkOperation.of(b -> b
+                .update(u -> u
+                        .index(index)
+                        .id(entityId)
+                        .retryOnConflict(retryOnConflict)
+                        .action(a -> a
+                                .doc(projectedFields)
+                                .detectNoop(true)
+                                .upsert(projectedUpsert)
+                        )
+                )
+        ));
+    }
+
+    @Override
+    public String incrementCounters(String index, String entityId, Map<String, Long> counterDeltas,
+                                    Map<String, Object> upsertDocument, String jsonFilePath) {
+        return incrementCounters(index, entityId, counterDeltas, upsertDocument, jsonFilePath, esRefreshPolicies.getUpdate());
+    }
+
+    /**
+     * Atomically adds the deltas to the counter fields with a painless script, a missing counter
+     * counts as zero. All zero deltas are a noop.
+     */
+    @Override
+    public String incrementCounters(String index, String entityId, Map<String, Long> counterDeltas,
+                                    Map<String, Object> upsertDocument, String jsonFilePath, Refresh refresh) {
+        try {
+            Set<String> requiredFields = esFieldProjector.getRequiredFields(jsonFilePath);
+            Map<String, Long> deltas = new HashMap<>(counterDeltas);
+            deltas.keySet().removeIf(key -> !requiredFields.contains(key));
+            Script script = Script.of(sc -> sc.inline(i -> i
+                    .lang("painless")
+                    .source(INCREMENT_COUNTERS_SCRIPT)
+                    .params("deltas", JsonData.of(deltas))));
+            UpdateRequest.Builder<Object, Object> updateRequest = new UpdateRequest.Builder<Object, Object>()
+                    .index(index)
+                    .id(entityId)
+                    .script(script)
+                    .retryOnConflict(retryOnConflict)
+                    .refresh(refresh);
+            if (upsertDocument != null) {
+                updateRequest.upsert(esFieldProjector.project(upsertDocument, jsonFilePath));
+            }
+            UpdateResponse<Object> response = elasticsearchClient.update(updateRequest.build(), Object.class);
+            return response.result().jsonValue();
+        } catch (Exception e) {
+            log.error("Issue while incrementing counters of document {} in es: {}", entityId, e.getMessage());
+            return null;
+        }
+    }
+
     @Override
     public void deleteDocument(String documentId, String esIndexName) {
+        deleteDocument(documentId, esIndexName, esRefreshPolicies.getDelete());
+    }
+
+    @Override
+    public void deleteDocument(String documentId, String esIndexName, Refresh refresh) {
         try {
-            DeleteRequest request = new DeleteRequest.Builder().index(esIndexName).id(documentId).build();
+            DeleteRequest request = new DeleteRequest.Builder().index(esIndexName).id(documentId).refresh(refresh).build();
             DeleteResponse response = elasticsearchClient.delete(request);
             if (response.result().jsonValue().equalsIgnoreCase("DELETED")) {
                 log.info("Document deleted successfully from elasticsearch.");
-                RefreshRequest refreshRequest = new RefreshRequest.Builder().index(esIndexName).build();
-                elasticsearchClient.indices().refresh(refreshRequest);
-                log.info("Index refreshed to reflect the document deletion.");
             } else {
                 log.error("Document not found or failed to delete from elasticsearch.");
             }
         } catch (Exception e) {
             log.error("Error occurred during deleting document in elasticsearch");
         }
+        searchResultCacheService.invalidate(List.of(documentId));
     }
 
     @Override
     public SearchResult searchDocuments(String esIndexName, SearchCriteria searchCriteria) {
-        SearchRequest.Builder searchRequestBuilder = buildSearchRequest(searchCriteria);
-        assert searchRequestBuilder != null;
-        searchRequestBuilder.index(esIndexName);
+        if (searchCriteria == null) {
+            log.error("Search criteria body is missing");
+            return null;
+        }
+        return searchResultCacheService.getOrLoad(esIndexName, searchCriteria,
+                () -> searchDocumentsFromIndex(esIndexName, searchCriteria));
+    }
+
+    /**
+     * Writes the page as the JSON of a {@link SearchResult} straight to the stream. Hit sources are
+     * kept as the raw bytes of the response and copied out unchanged, so no map is built per
+     * document. Results are not cached and only offset paging is supported.
+     */
+    @Override
+    public void streamSearchDocuments(String esIndexName, SearchCriteria searchCriteria,
+                                      OutputStream outputStream) throws IOException {
+        if (searchCriteria == null) {
+            throw new CustomException("search criteria", "Search criteria body is missing", HttpStatus.BAD_REQUEST);
+        }
+        if (searchCriteria.isCursorPaging() || searchCriteria.getCursor() != null) {
+            throw new CustomException("search cursor", "Cursor paging is not supported by the raw search",
+                    HttpStatus.BAD_REQUEST);
+        }
+        SearchResponse<BinaryData> searchResponse = elasticsearchClient.search(
+                buildPagedSearchRequest(esIndexName, searchCriteria), BinaryData.class);
+        outputStream.write(RAW_RESULT_START);
+        boolean first = true;
+        for (Hit<BinaryData> hit : searchResponse.hits().hits()) {
+            if (hit.source() == null) {
+                continue;
+            }
+            if (!first) {
+                outputStream.write(',');
+            }
+            hit.source().writeTo(outputStream);
+            first = false;
+        }
+        outputStream.write(RAW_RESULT_FACETS);
+        outputStream.write(objectMapper.writeValueAsBytes(extractFacetData(searchResponse, searchCriteria)));
+        outputStream.write(RAW_RESULT_TOTAL_COUNT);
+        outputStream.write(Long.toString(searchResponse.hits().total().value()).getBytes(StandardCharsets.UTF_8));
+        outputStream.write('}');
+        outputStream.flush();
+    }
+
+    private SearchResult searchDocumentsFromIndex(String esIndexName, SearchCriteria searchCriteria) {
         try {
-            if (searchCriteria != null) {
-                int pageNumber = searchCriteria.getPageNumber();
-                int pageSize = searchCriteria.getPageSize();
-                int from = pageNumber * pageSize;
-                searchRequestBuilder.from(from);
-                if (pageSize > 0) {
-                    searchRequestBuilder.size(pageSize);
-                }
+            if (searchCriteria.isCursorPaging() || searchCriteria.getCursor() != null) {
+                return searchDocumentsByCursor(esIndexName, searchCriteria, compiledSearchRequest(searchCriteria));
             }
-            SearchRequest searchRequest = searchRequestBuilder.build();
-            log.info("Final search query: {}", searchRequest.toString());
+            SearchRequest searchRequest = buildPagedSearchRequest(esIndexName, searchCriteria);
             SearchResponse<Object> paginatedSearchResponse =
                     elasticsearchClient.search(searchRequest, Object.class);
-            List<Map<String, Object>> paginatedResult = extractPaginatedResult(paginatedSearchResponse);
-            Map<String, List<FacetDTO>> fieldAggregations =
-                    extractFacetData(paginatedSearchResponse, searchCriteria);
-            SearchResult searchResult = new SearchResult();
-            searchResult.setData(paginatedResult);
-            searchResult.setFacets(fieldAggregations);
-            searchResult.setTotalCount(paginatedSearchResponse.hits().total().value());
-            return searchResult;
+            return toSearchResult(paginatedSearchResponse, searchCriteria);
         } catch (IOException e) {
             log.error("Error while fetching details from elastic search");
             return null;
         }
     }
 
+    private SearchRequest.Builder compiledSearchRequest(SearchCriteria searchCriteria) {
+        SearchRequest compiledSearchRequest = compiledSearchRequestCache.get(searchCriteria,
+                () -> buildSearchRequest(searchCriteria).build());
+        return searchRequestBuild(compiledSearchRequest);
+    }
+
+    /**
+     * Builds the offset paged search request of the criteria, shared with {@link EsAsyncUtilServiceImpl}.
+     */
+    @Override
+    public SearchRequest buildPagedSearchRequest(String esIndexName, SearchCriteria searchCriteria) {
+        SearchRequest.Builder searchRequestBuilder = compiledSearchRequest(searchCriteria);
+        searchRequestBuilder.index(esIndexName);
+        int pageNumber = searchCriteria.getPageNumber();
+        int pageSize = searchCriteria.getPageSize();
+        int from = pageNumber * pageSize;
+        searchRequestBuilder.from(from);
+        if (pageSize > 0) {
+            searchRequestBuilder.size(pageSize);
+        }
+        SearchRequest searchRequest = searchRequestBuilder.build();
+        log.debug("Final search query: {}", searchRequest);
+        return searchRequest;
+    }
+
+    @Override
+    public SearchResult toSearchResult(SearchResponse<Object> paginatedSearchResponse, SearchCriteria searchCriteria) {
+        SearchResult searchResult = new SearchResult();
+        searchResult.setData(extractPaginatedResult(paginatedSearchResponse));
+        searchResult.setFacets(extractFacetData(paginatedSearchResponse, searchCriteria));
+        searchResult.setTotalCount(paginatedSearchResponse.hits().total().value());
+        return searchResult;
+    }
+
+    /**
+     * Pages with search_after on a point in time, sorted by the requested order with communityId as
+     * tiebreaker. The point in time is closed once the last page has been served.
+     */
+    private SearchResult searchDocumentsByCursor(String esIndexName, SearchCriteria searchCriteria,
+                                                 SearchRequest.Builder searchRequestBuilder) throws IOException {
+        int pageSize = searchCriteria.getPageSize();
+        if (pageSize <= 0) {
+            // without an explicit size ES returns 10 hits and the cursor would end after the first page
+            throw new CustomException("pageSize", "Cursor paging needs a positive pageSize", HttpStatus.BAD_REQUEST);
+        }
+        SearchCursor cursor = searchCriteria.getCursor() == null ? null : decodeCursor(searchCriteria.getCursor());
+        String pitId = cursor == null
+                ? elasticsearchClient.openPointInTime(o -> o.index(esIndexName).keepAlive(t -> t.time(pitKeepAlive))).id()
+                : cursor.pitId();
+        searchRequestBuilder
+                .pit(p -> p.id(pitId).keepAlive(t -> t.time(pitKeepAlive)))
+                .sort(SortOptions.of(so -> so.field(f -> f.field(Constants.COMMUNITY_ID).order(SortOrder.Asc))));
+        if (cursor != null) {
+            searchRequestBuilder.searchAfter(cursor.searchAfter());
+        }
+        searchRequestBuilder.size(pageSize);
+        SearchRequest searchRequest = searchRequestBuilder.build();
+        log.debug("Final search query: {}", searchRequest);
+        SearchResponse<Object> searchResponse = elasticsearchClient.search(searchRequest, Object.class);
+        List<Hit<Object>> hits = searchResponse.hits().hits();
+        SearchResult searchResult = new SearchResult();
+        searchResult.setData(extractPaginatedResult(searchResponse));
+        searchResult.setFacets(extractFacetData(searchResponse, searchCriteria));
+        searchResult.setTotalCount(searchResponse.hits().total().value());
+        if (hits.size() == pageSize) {
+            String nextPitId = searchResponse.pitId() != null ? searchResponse.pitId() : pitId;
+            searchResult.setNextCursor(encodeCursor(new SearchCursor(nextPitId, hits.get(hits.size() - 1).sort())));
+        } else {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        }
+        return searchResult;
+    }
+
+    private String encodeCursor(SearchCursor cursor) throws IOException {
+        List<Object> searchAfter = new ArrayList<>();
+        cursor.searchAfter().forEach(value -> searchAfter.add(value._get()));
+        Map<String, Object> encoded = new HashMap<>();
+        encoded.put(Constants.PIT, cursor.pitId());
+        encoded.put(Constants.SEARCH_AFTER, searchAfter);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(encoded));
+    }
+
+    private SearchCursor decodeCursor(String cursor) {
+        try {
+            JsonNode decoded = objectMapper.readTree(Base64.getUrlDecoder().decode(cursor));
+            List<FieldValue> searchAfter = new ArrayList<>();
+            for (JsonNode value : decoded.get(Constants.SEARCH_AFTER)) {
+                if (value.isNull()) {
+                    searchAfter.add(FieldValue.NULL);
+                } else if (value.isIntegralNumber()) {
+                    searchAfter.add(FieldValue.of(value.longValue()));
+                } else if (value.isNumber()) {
+                    searchAfter.add(FieldValue.of(value.doubleValue()));
+                } else if (value.isBoolean()) {
+                    searchAfter.add(FieldValue.of(value.booleanValue()));
+                } else {
+                    searchAfter.add(FieldValue.of(value.asText()));
+                }
+            }
+            return new SearchCursor(decoded.get(Constants.PIT).asText(), searchAfter);
+        } catch (Exception e) {
+            throw new CustomException("search cursor", "Invalid search cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private record SearchCursor(String pitId, List<FieldValue> searchAfter) {
+    }
+
     private Map<String, List<FacetDTO>> extractFacetData(
-            SearchResponse<Object> searchResponse, SearchCriteria searchCriteria) {
+            SearchResponse<?> searchResponse, SearchCriteria searchCriteria) {
         Map<String, List<FacetDTO>> fieldAggregations = new HashMap<>();
         if (searchCriteria.getFacets() != null) {
             for (String field : searchCriteria.getFacets()) {
@@ -195,20 +584,20 @@ public class EsUtilServiceImpl implements EsUtilService {
     }
 
     private SearchRequest.Builder buildSearchRequest(SearchCriteria searchCriteria) {
-        log.info("Building search query");
+        log.debug("Building search query");
         if (searchCriteria == null || searchCriteria.toString().isEmpty()) {
             log.error("Search criteria body is missing");
             return null;
         }
         BoolQuery.Builder boolQueryBuilder = buildFilterQuery(searchCriteria.getFilterCriteriaMap());
         SearchRequest.Builder searchSourceBuilder = new SearchRequest.Builder();
-        searchSourceBuilder.query(boolQueryBuilder.build()._toQuery());
         addSortToSearchSourceBuilder(searchCriteria, searchSourceBuilder);
         addRequestedFieldsToSearchSourceBuilder(searchCriteria, searchSourceBuilder);
         addQueryStringToFilter(searchCriteria.getSearchString(), boolQueryBuilder);
         addFacetsToSearchSourceBuilder(searchCriteria.getFacets(), searchSourceBuilder);
         Query queryPart = buildQueryPart(searchCriteria.getQuery());
         boolQueryBuilder.must(queryPart);
+        searchSourceBuilder.query(searchQueryPlanner.plan(boolQueryBuilder.build()._toQuery()));
         return searchSourceBuilder;
     }
 
@@ -307,7 +696,12 @@ public class EsUtilServiceImpl implements EsUtilService {
     }
 
     private void addQueryStringToFilter(String searchString, BoolQuery.Builder boolQueryBuilder) {
-        if (isNotBlank(searchString)) {
+        if (isNotBlank(searchString) && searchTagsAutocompleteEnabled) {
+            boolQueryBuilder.must(Query.of(q -> q.match(m -> m
+                    .field(searchTagsAutocompleteField)
+                    .query(searchString)
+                    .operator(Operator.And))));
+        } else if (isNotBlank(searchString)) {
             Query wildcardQuery = Query.of(q -> q.wildcard(
                     WildcardQuery.of(w -> w
                             .field("contentSearchTags.keyword")
@@ -334,48 +728,144 @@ public class EsUtilServiceImpl implements EsUtilService {
         return value != null && !value.trim().isEmpty();
     }
 
+    /**
+     * Deletes every matching document with a sliced, throttled delete_by_query task that is polled
+     * until it finishes. If the task cannot run or leaves failures behind, the remaining documents
+     * are deleted by streaming their ids on a point in time into batched bulk deletes.
+     */
     @Override
-    public void deleteDocumentsByCriteria(String esIndexName, Query Query) {
+    public void deleteDocumentsByCriteria(String esIndexName, Query query) {
         try {
-            HitsMetadata<Object> searchHits = executeSearch(esIndexName, Query);
-            assert searchHits.total() != null;
-            if (searchHits.total().value() > 0) {
-                BulkResponse bulkResponse = deleteMatchingDocuments(esIndexName, searchHits);
-                if (!bulkResponse.errors()) {
-                    log.info("Documents matching the criteria deleted successfully from Elasticsearch.");
-                } else {
-                    log.error("Some documents failed to delete from Elasticsearch.");
-                }
-            } else {
-                log.info("No documents match the criteria.");
+            if (!deleteByQueryEnabled || !deleteByQueryTask(esIndexName, query)) {
+                deleteByStreamingIds(esIndexName, query);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while deleting documents by criteria from {}", esIndexName);
         } catch (Exception e) {
             log.error("Error occurred during deleting documents by criteria from Elasticsearch.", e);
         }
+        searchResultCacheService.invalidateIndex(esIndexName);
+    }
+
+    /**
+     * Runs delete_by_query as a background task and returns whether it deleted everything it matched,
+     * which it did not when a document failed or was skipped on a version conflict.
+     */
+    private boolean deleteByQueryTask(String esIndexName, Query query) throws InterruptedException {
+        String taskId = null;
+        try {
+            DeleteByQueryResponse submitted = elasticsearchClient.deleteByQuery(d -> d
+                    .index(esIndexName)
+                    .query(query)
+                    .slices(deleteByQuerySlices())
+                    .requestsPerSecond(deleteByQueryRequestsPerSecond)
+                    .conflicts(Conflicts.Proceed)
+                    .waitForCompletion(false));
+            taskId = submitted.task();
+            String submittedTaskId = taskId;
+            log.info("Started delete by query task {} on {}", taskId, esIndexName);
+            long deadline = System.currentTimeMillis() + deleteByQueryTimeoutMs;
+            GetTasksResponse task = elasticsearchClient.tasks().get(g -> g.taskId(submittedTaskId));
+            while (!task.completed()) {
+                if (System.currentTimeMillis() >= deadline) {
+                    log.error("Delete by query task {} did not complete within {} ms", taskId, deleteByQueryTimeoutMs);
+                    cancelTask(taskId);
+                    return false;
+                }
+                Thread.sleep(deleteByQueryPollIntervalMs);
+                task = elasticsearchClient.tasks().get(g -> g.taskId(submittedTaskId));
+            }
+            if (task.error() != null) {
+                log.error("Delete by query task {} failed: {}", taskId, task.error().reason());
+                return false;
+            }
+            Map<String, Object> status = task.response() == null ? Map.of() : task.response().to(TASK_STATUS_TYPE);
+            List<?> failures = (List<?>) status.getOrDefault("failures", List.of());
+            long versionConflicts = ((Number) status.getOrDefault("version_conflicts", 0)).longValue();
+            log.info("Delete by query task {} deleted {} documents with {} failures and {} version conflicts", taskId,
+                    status.get("deleted"), failures.size(), versionConflicts);
+            // conflicts are skipped with conflicts=proceed, so those documents are still there
+            return failures.isEmpty() && versionConflicts == 0;
+        } catch (InterruptedException e) {
+            if (taskId != null) {
+                cancelTask(taskId);
+            }
+            throw e;
+        } catch (Exception e) {
+            log.error("Delete by query failed on {}, falling back to batched deletes", esIndexName, e);
+            return false;
+        }
     }
 
-    private HitsMetadata<Object> executeSearch(String esIndexName, Query query) throws IOException {
-        SearchRequest searchRequest = new SearchRequest.Builder()
-                .index(esIndexName)
-                .query(query)
-                .build();
-        SearchResponse<Object> searchResponse =
-                elasticsearchClient.search(searchRequest, Object.class);
-        return searchResponse.hits();
+    private void cancelTask(String taskId) {
+        try {
+            elasticsearchClient.tasks().cancel(c -> c.taskId(taskId));
+            log.info("Cancelled delete by query task {}", taskId);
+        } catch (Exception e) {
+            log.error("Failed to cancel delete by query task {}", taskId, e);
+        }
     }
 
-    private BulkResponse deleteMatchingDocuments(String esIndexName,  HitsMetadata<Object> searchHits)
-            throws IOException {
-        List<BulkOperation> operations = new ArrayList<>();
-        for (Hit<Object> hit : searchHits.hits()) {
-            new DeleteRequest.Builder()
-                    .index(esIndexName)
-                    .id(hit.id())
-                    .build();
-            operations.add(new BulkOperation.Builder().delete(d -> d.index(esIndexName).id(hit.id())).build());
+    private Slices deleteByQuerySlices() {
+        if ("auto".equalsIgnoreCase(deleteByQuerySlices)) {
+            return Slices.of(s -> s.computed(SlicesCalculation.Auto));
+        }
+        return Slices.of(s -> s.value(Integer.parseInt(deleteByQuerySlices)));
+    }
+
+    /**
+     * Pages through the matching ids with search_after on a point in time, without fetching sources,
+     * and bulk deletes each page, so only one batch of ids is ever held in memory.
+     */
+    private void deleteByStreamingIds(String esIndexName, Query query) throws IOException {
+        String pitId = elasticsearchClient.openPointInTime(o -> o.index(esIndexName).keepAlive(t -> t.time(pitKeepAlive))).id();
+        long deleted = 0;
+        boolean failed = false;
+        try {
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                String currentPitId = pitId;
+                List<FieldValue> currentSearchAfter = searchAfter;
+                SearchResponse<Void> page = elasticsearchClient.search(s -> {
+                    s.pit(p -> p.id(currentPitId).keepAlive(t -> t.time(pitKeepAlive)))
+                            .query(query)
+                            .size(deleteBatchSize)
+                            .source(SourceConfig.of(sc -> sc.fetch(false)))
+                            .sort(so -> so.field(f -> f.field("_shard_doc")))
+                            .trackTotalHits(t -> t.enabled(false));
+                    if (currentSearchAfter != null) {
+                        s.searchAfter(currentSearchAfter);
+                    }
+                    return s;
+                }, Void.class);
+                List<Hit<Void>> hits = page.hits().hits();
+                if (hits.isEmpty()) {
+                    break;
+                }
+                List<BulkOperation> operations = new ArrayList<>();
+                for (Hit<Void> hit : hits) {
+                    operations.add(BulkOperation.of(b -> b.delete(d -> d.index(hit.index()).id(hit.id()))));
+                }
+                BulkResponse bulkResponse = elasticsearchClient.bulk(b -> b.operations(operations).refresh(esRefreshPolicies.getBulk()));
+                if (bulkResponse.errors()) {
+                    failed = true;
+                }
+                deleted += operations.size();
+                if (page.pitId() != null) {
+                    pitId = page.pitId();
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+        } finally {
+            String openPitId = pitId;
+            elasticsearchClient.closePointInTime(c -> c.id(openPitId));
+        }
+        if (failed) {
+            log.error("Some of the {} documents matching the criteria failed to delete from Elasticsearch.", deleted);
+        } else {
+            log.info("Deleted {} documents matching the criteria from Elasticsearch.", deleted);
         }
-        BulkRequest bulkRequest = new BulkRequest.Builder().operations(operations).build();
-        return elasticsearchClient.bulk(bulkRequest);
     }
 
     private boolean isRangeQuery(Map<String, Object> nestedMap) {
@@ -384,7 +874,7 @@ public class EsUtilServiceImpl implements EsUtilService {
                 key.equals(Constants.SEARCH_OPERATION_LESS_THAN));
     }
     private Query buildQueryPart(Map<String, Object> queryMap) {
-        log.info("Search:: buildQueryPart");
+        log.debug("Search:: buildQueryPart");
         if (queryMap == null || queryMap.isEmpty()) {
             return QueryBuilders.matchAll().build()._toQuery();
         }
@@ -409,7 +899,7 @@ public class EsUtilServiceImpl implements EsUtilService {
         return null;
     }
     private BoolQuery buildBoolQuery(Map<String, Object> boolMap) {
-        log.info("Search:: builderBoolQuery");
+        log.debug("Search:: builderBoolQuery");
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
         if (boolMap.containsKey(Constants.MUST)) {
             List<Map<String, Object>> mustList = (List<Map<String, Object>>) boolMap.get("must");
@@ -431,7 +921,7 @@ public class EsUtilServiceImpl implements EsUtilService {
     }
 
     private Query buildTermQuery(Map<String, Object> termMap) {
-        log.info("search::buildTermQuery");
+        log.debug("search::buildTermQuery");
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
         for (Entry<String, Object> entry : termMap.entrySet()) {
             boolQueryBuilder.must(QueryBuilders.term(t -> t.field(entry.getKey()).value((FieldValue) entry.getValue())));
@@ -440,7 +930,7 @@ public class EsUtilServiceImpl implements EsUtilService {
     }
 
     private Query buildTermsQuery(Map<String, Object> termsMap) {
-        log.info("search:: buildTermsQuery");
+        log.debug("search:: buildTermsQuery");
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
         for (Entry<String, Object> entry : termsMap.entrySet()) {
             boolQueryBuilder.must(QueryBuilders.terms(t -> t.field(entry.getKey()).terms((TermsQueryField) entry.getValue())));
@@ -449,7 +939,7 @@ public class EsUtilServiceImpl implements EsUtilService {
     }
 
     private Query buildMatchQuery(Map<String, Object> matchMap) {
-        log.info("search:: buildMatchQuery");
+        log.debug("search:: buildMatchQuery");
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
         for (Entry<String, Object> entry : matchMap.entrySet()) {
             boolQueryBuilder.must(QueryBuilders.match(m -> m.field(entry.getKey()).query((FieldValue) entry.getValue())));
@@ -458,7 +948,7 @@ public class EsUtilServiceImpl implements EsUtilService {
     }
 
     private Query buildRangeQuery(Map<String, Object> rangeMap) {
-        log.info("search:: buildRangeQuery");
+        log.debug("search:: buildRangeQuery");
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
         for (Entry<String, Object> entry : rangeMap.entrySet()) {
             Map<String, Object> rangeConditions = (Map<String, Object>) entry.getValue();
@@ -515,7 +1005,7 @@ public class EsUtilServiceImpl implements EsUtilService {
                 );
                 operations.add(operation);
             });
-            BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations));
+            BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations).refresh(esRefreshPolicies.getBulk()));
             return elasticsearchClient.bulk(bulkRequest);
         } catch (Exception e) {
             log.error(e.getMessage());
@@ -524,10 +1014,85 @@ public class EsUtilServiceImpl implements EsUtilService {
         }
     }
 
-    private SearchRequest.Builder searchRequestBuild(SearchRequest original, String esIndexName) {
+    /**
+     * Bulk creates the documents, skipping any id that already exists in the index, so a bulk load
+     * never overwrites a document a concurrent writer has already put there.
+     */
+    @Override
+    public BulkResponse saveAllIfAbsent(String esIndexName, Map<String, Map<String, Object>> documents,
+                                        String jsonFilePath) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>();
+        documents.forEach((id, document) -> {
+            Map<String, Object> projected = esFieldProjector.project(document, jsonFilePath);
+            operations.add(BulkOperation.of(b -> b
+                    .create(c -> c
+                            .index(esIndexName)
+                            .id(id)
+                            .document(projected)
+                    )
+            ));
+        });
+        BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations).refresh(esRefreshPolicies.getBulk()));
+        return elasticsearchClient.bulk(bulkRequest);
+    }
+
+    /**
+     * Switches off refreshes and replicas on the index for a large load, remembering the current
+     * values so {@link #endBulkLoad(String)} can restore them.
+     */
+    @Override
+    public void beginBulkLoad(String indexName) throws IOException {
+        IndexSettings current = elasticsearchClient.indices().getSettings(g -> g.index(indexName))
+                .result().get(indexName).settings();
+        if (current != null && current.index() != null) {
+            current = current.index();
+        }
+        BulkLoadSettings previous = new BulkLoadSettings(
+                current == null || current.refreshInterval() == null ? null : current.refreshInterval().time(),
+                current == null ? null : current.numberOfReplicas());
+        if (bulkLoadSettings.putIfAbsent(indexName, previous) != null) {
+            log.info("Index {} is already in bulk load mode", indexName);
+            return;
+        }
+        elasticsearchClient.indices().putSettings(p -> p
+                .index(indexName)
+                .settings(s -> s
+                        .refreshInterval(t -> t.time("-1"))
+                        .numberOfReplicas("0")));
+        log.info("Index {} switched to bulk load mode", indexName);
+    }
+
+    @Override
+    public void endBulkLoad(String indexName) throws IOException {
+        BulkLoadSettings previous = bulkLoadSettings.remove(indexName);
+        if (previous == null) {
+            log.info("Index {} is not in bulk load mode", indexName);
+            return;
+        }
+        elasticsearchClient.indices().putSettings(p -> p
+                .index(indexName)
+                .settings(s -> s
+                        .refreshInterval(t -> t.time(previous.refreshInterval() == null
+                                ? bulkLoadRestoreRefreshInterval : previous.refreshInterval()))
+                        .numberOfReplicas(previous.numberOfReplicas() == null
+                                ? bulkLoadRestoreReplicas : previous.numberOfReplicas())));
+        elasticsearchClient.indices().refresh(RefreshRequest.of(r -> r.index(indexName)));
+        log.info("Index {} restored from bulk load mode", indexName);
+    }
+
+    private record BulkLoadSettings(String refreshInterval, String numberOfReplicas) {
+    }
+
+    /**
+     * Copies a compiled search request into a fresh builder, so the index, paging and cursor of one
+     * search can be applied without touching the cached request.
+     */
+    private SearchRequest.Builder searchRequestBuild(SearchRequest original) {
         SearchRequest.Builder builder = new SearchRequest.Builder();
-        builder.index(esIndexName);
         builder.query(original.query());
+        if (!original.sort().isEmpty()) {
+            builder.sort(original.sort());
+        }
         if (original.aggregations() != null) {
             builder.aggregations(original.aggregations());
         }
@@ -0,0 +1,42 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+
+/**
+ * Hashes search criteria in canonical form, properties and map keys sorted, so criteria that only
+ * differ in ordering share a key.
+ */
+public final class SearchCriteriaHasher {
+
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .build();
+
+    private SearchCriteriaHasher() {
+    }
+
+    public static String hash(SearchCriteria searchCriteria, Collection<String> excludedFields) {
+        ObjectNode canonical = CANONICAL_MAPPER.valueToTree(searchCriteria);
+        canonical.remove(excludedFields);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(CANONICAL_MAPPER.writeValueAsString(canonical).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Failed to compute the search criteria key", e);
+        }
+    }
+}
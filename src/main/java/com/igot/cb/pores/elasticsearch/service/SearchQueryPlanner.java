@@ -0,0 +1,215 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites the bool tree built from the search criteria into an equivalent one that is cheaper to
+ * run: exact match, boolean and range predicates go to filter context where they are cached and not
+ * scored, nested conjunctions and disjunctions are flattened into their parent, identical clauses
+ * are dropped, term clauses on one field are merged into a single terms query where that keeps the
+ * meaning (must_not, and should without minimum_should_match), and redundant match_all clauses are
+ * removed.
+ */
+@Component
+public class SearchQueryPlanner {
+
+    public Query plan(Query query) {
+        if (!query.isBool()) {
+            return query;
+        }
+        BoolQuery bool = query.bool();
+        List<Query> must = new ArrayList<>();
+        List<Query> filter = new ArrayList<>();
+        List<Query> should = new ArrayList<>();
+        List<Query> mustNot = new ArrayList<>();
+        for (Query clause : bool.must()) {
+            addMust(plan(clause), must, filter, mustNot);
+        }
+        for (Query clause : bool.filter()) {
+            addFilter(plan(clause), filter, mustNot);
+        }
+        for (Query clause : bool.should()) {
+            addShould(plan(clause), should, bool.minimumShouldMatch() == null);
+        }
+        for (Query clause : bool.mustNot()) {
+            addMustNot(plan(clause), mustNot);
+        }
+        if (must.isEmpty() && filter.isEmpty() && should.isEmpty() && mustNot.isEmpty()) {
+            return QueryBuilders.matchAll().build()._toQuery();
+        }
+        List<Query> plannedMust = distinct(must);
+        List<Query> plannedFilter = distinct(filter);
+        // with a minimum_should_match every should clause counts, so none may be dropped or merged
+        List<Query> plannedShould = bool.minimumShouldMatch() == null ? mergeTerms(distinct(should)) : should;
+        List<Query> plannedMustNot = mergeTerms(distinct(mustNot));
+        String minimumShouldMatch = bool.minimumShouldMatch();
+        if (minimumShouldMatch == null && !plannedShould.isEmpty() && plannedMust.isEmpty() && plannedFilter.isEmpty()
+                && !(bool.must().isEmpty() && bool.filter().isEmpty())) {
+            // should clauses are optional next to must or filter clauses, keep them optional once those are gone
+            minimumShouldMatch = "0";
+        }
+        if (isPlainBool(query) && minimumShouldMatch == null && plannedFilter.isEmpty() && plannedMustNot.isEmpty()
+                && plannedMust.size() + plannedShould.size() == 1) {
+            return plannedMust.isEmpty() ? plannedShould.get(0) : plannedMust.get(0);
+        }
+        BoolQuery.Builder planned = new BoolQuery.Builder()
+                .minimumShouldMatch(minimumShouldMatch)
+                .boost(bool.boost())
+                .queryName(bool.queryName());
+        if (!plannedMust.isEmpty()) {
+            planned.must(plannedMust);
+        }
+        if (!plannedFilter.isEmpty()) {
+            planned.filter(plannedFilter);
+        }
+        if (!plannedShould.isEmpty()) {
+            planned.should(plannedShould);
+        }
+        if (!plannedMustNot.isEmpty()) {
+            planned.mustNot(plannedMustNot);
+        }
+        return planned.build()._toQuery();
+    }
+
+    private void addMust(Query clause, List<Query> must, List<Query> filter, List<Query> mustNot) {
+        if (isPlainMatchAll(clause)) {
+            return;
+        }
+        if (isConjunction(clause)) {
+            must.addAll(clause.bool().must());
+            filter.addAll(clause.bool().filter());
+            mustNot.addAll(clause.bool().mustNot());
+        } else if (isNonScoring(clause)) {
+            filter.add(clause);
+        } else {
+            must.add(clause);
+        }
+    }
+
+    private void addFilter(Query clause, List<Query> filter, List<Query> mustNot) {
+        if (isPlainMatchAll(clause)) {
+            return;
+        }
+        if (isConjunction(clause)) {
+            filter.addAll(clause.bool().must());
+            filter.addAll(clause.bool().filter());
+            mustNot.addAll(clause.bool().mustNot());
+        } else {
+            filter.add(clause);
+        }
+    }
+
+    private void addShould(Query clause, List<Query> should, boolean flattenable) {
+        if (flattenable && isDisjunction(clause)) {
+            should.addAll(clause.bool().should());
+        } else {
+            should.add(clause);
+        }
+    }
+
+    private void addMustNot(Query clause, List<Query> mustNot) {
+        if (isDisjunction(clause)) {
+            mustNot.addAll(clause.bool().should());
+        } else {
+            mustNot.add(clause);
+        }
+    }
+
+    private boolean isPlainMatchAll(Query query) {
+        return query.isMatchAll() && query.matchAll().boost() == null && query.matchAll().queryName() == null;
+    }
+
+    private boolean isPlainBool(Query query) {
+        return query.isBool() && query.bool().boost() == null && query.bool().queryName() == null
+                && query.bool().minimumShouldMatch() == null;
+    }
+
+    /**
+     * A bool of and-ed clauses only, which can be lifted into an enclosing must or filter.
+     */
+    private boolean isConjunction(Query query) {
+        return isPlainBool(query) && query.bool().should().isEmpty();
+    }
+
+    /**
+     * A bool of or-ed clauses only, which can be lifted into an enclosing should or must_not.
+     */
+    private boolean isDisjunction(Query query) {
+        BoolQuery bool = query.isBool() ? query.bool() : null;
+        return isPlainBool(query) && !bool.should().isEmpty() && bool.must().isEmpty()
+                && bool.filter().isEmpty() && bool.mustNot().isEmpty();
+    }
+
+    private boolean isNonScoring(Query query) {
+        if (query.isTerm() || query.isTerms() || query.isRange() || query.isExists() || query.isIds()) {
+            return true;
+        }
+        return query.isBool() && query.bool().must().isEmpty() && query.bool().should().isEmpty();
+    }
+
+    private List<Query> distinct(List<Query> clauses) {
+        Map<String, Query> distinct = new LinkedHashMap<>();
+        for (Query clause : clauses) {
+            distinct.putIfAbsent(clause.toString(), clause);
+        }
+        return new ArrayList<>(distinct.values());
+    }
+
+    /**
+     * Merges plain term and terms clauses on the same field into one terms query, only valid where
+     * the clauses are or-ed.
+     */
+    private List<Query> mergeTerms(List<Query> clauses) {
+        Map<String, Map<Object, FieldValue>> valuesByField = new LinkedHashMap<>();
+        Map<String, Integer> clauseCountByField = new LinkedHashMap<>();
+        for (Query clause : clauses) {
+            String field = mergeableField(clause);
+            if (field != null) {
+                Map<Object, FieldValue> values = valuesByField.computeIfAbsent(field, key -> new LinkedHashMap<>());
+                List<FieldValue> clauseValues = clause.isTerm()
+                        ? List.of(clause.term().value()) : clause.terms().terms().value();
+                clauseValues.forEach(value -> values.putIfAbsent(value._get(), value));
+                clauseCountByField.merge(field, 1, Integer::sum);
+            }
+        }
+        List<Query> merged = new ArrayList<>();
+        Set<String> emitted = new LinkedHashSet<>();
+        for (Query clause : clauses) {
+            String field = mergeableField(clause);
+            if (field == null || clauseCountByField.get(field) == 1) {
+                merged.add(clause);
+            } else if (emitted.add(field)) {
+                List<FieldValue> values = new ArrayList<>(valuesByField.get(field).values());
+                merged.add(Query.of(q -> q.terms(t -> t.field(field).terms(v -> v.value(values)))));
+            }
+        }
+        return merged;
+    }
+
+    private String mergeableField(Query clause) {
+        if (clause.isTerm()) {
+            TermQuery term = clause.term();
+            boolean plain = term.boost() == null && term.queryName() == null && !Boolean.TRUE.equals(term.caseInsensitive());
+            return plain ? term.field() : null;
+        }
+        if (clause.isTerms()) {
+            TermsQuery terms = clause.terms();
+            boolean plain = terms.boost() == null && terms.queryName() == null && terms.terms().isValue();
+            return plain ? terms.field() : null;
+        }
+        return null;
+    }
+}
@@ -1,11 +1,82 @@
 package com.igot.cb.pores.repository;
 
 import com.igot.cb.pores.entity.CommunityEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CommunityEngagementRepository extends JpaRepository<com.igot.cb.pores.entity.CommunityEntity, String> {
 
     Optional<CommunityEntity> findByCommunityIdAndIsActive(String communityId, boolean isActive);
+
+    /**
+     * Adds counter deltas, given as a json object of field to delta, to the numeric fields of the
+     * community data in a single statement and returns the updated data document, or empty if no
+     * active community matched.
+     */
+    @Transactional
+    @Query(value = "UPDATE communities c SET data = COALESCE(c.data, CAST('{}' AS jsonb)) || COALESCE(("
+            + "SELECT jsonb_object_agg(f.key, COALESCE(CAST(c.data ->> f.key AS bigint), 0) + CAST(f.value AS bigint)) "
+            + "FROM jsonb_each_text(CAST(:deltas AS jsonb)) AS f), CAST('{}' AS jsonb)) "
+            + "WHERE c.community_id = :communityId AND c.is_active = true "
+            + "RETURNING CAST(c.data AS text)", nativeQuery = true)
+    Optional<String> incrementCounters(@Param("communityId") String communityId, @Param("deltas") String deltas);
+
+    /**
+     * Adds counter deltas of many communities, given as a json object of communityId to an object of
+     * field to delta, to every matching active community in a single statement.
+     */
+    @Transactional
+    @Query(value = "UPDATE communities c SET data = COALESCE(c.data, CAST('{}' AS jsonb)) || COALESCE(("
+            + "SELECT jsonb_object_agg(f.key, COALESCE(CAST(c.data ->> f.key AS bigint), 0) + CAST(f.value AS bigint)) "
+            + "FROM jsonb_each_text(d.value) AS f), CAST('{}' AS jsonb)) "
+            + "FROM jsonb_each(CAST(:deltas AS jsonb)) AS d "
+            + "WHERE c.community_id = d.key AND c.is_active = true "
+            + "RETURNING c.community_id AS \"communityId\", CAST(c.data AS text) AS \"data\"", nativeQuery = true)
+    List<CommunityData> incrementCountersInBulk(@Param("deltas") String deltas);
+
+    /**
+     * Splits the active communities into the given number of equally sized communityId ranges and
+     * returns the upper bound of each range, in order.
+     */
+    @Query(value = "SELECT max(s.community_id) FROM (SELECT community_id, ntile(:slices) OVER (ORDER BY community_id) AS slice "
+            + "FROM communities WHERE is_active = true) s GROUP BY s.slice ORDER BY 1", nativeQuery = true)
+    List<String> findSliceUpperBounds(@Param("slices") int slices);
+
+    /**
+     * Keyset page of the active communities with an id after the given one and up to the upper bound.
+     */
+    @Query(value = "SELECT community_id AS \"communityId\", CAST(data AS text) AS \"data\" FROM communities "
+            + "WHERE is_active = true AND community_id > :after AND community_id <= :upperBound "
+            + "ORDER BY community_id LIMIT :pageSize", nativeQuery = true)
+    List<CommunityData> findActivePage(@Param("after") String after, @Param("upperBound") String upperBound,
+                                       @Param("pageSize") int pageSize);
+
+    /**
+     * Streams the active communities with an id after the given one in id order, fetched from a
+     * server side cursor in chunks of the fetch size. Must be consumed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "SELECT community_id AS \"communityId\", CAST(data AS text) AS \"data\" FROM communities "
+            + "WHERE is_active = true AND community_id > :after ORDER BY community_id", nativeQuery = true)
+    Stream<CommunityData> streamActiveAfter(@Param("after") String after);
+
+    @Query(value = "SELECT community_id AS \"communityId\", CAST(data AS text) AS \"data\" FROM communities "
+            + "WHERE is_active = true AND community_id IN (:communityIds)", nativeQuery = true)
+    List<CommunityData> findActiveByIds(@Param("communityIds") Collection<String> communityIds);
+
+    interface CommunityData {
+        String getCommunityId();
+
+        String getData();
+    }
 }
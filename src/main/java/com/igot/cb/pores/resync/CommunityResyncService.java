@@ -0,0 +1,215 @@
+package com.igot.cb.pores.resync;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.cache.CacheService;
+import com.igot.cb.pores.cache.SearchResultCacheService;
+import com.igot.cb.pores.elasticsearch.reindex.CommunityIndexRouter;
+import com.igot.cb.pores.elasticsearch.service.EsFieldProjector;
+import com.igot.cb.pores.elasticsearch.service.EsUtilService;
+import com.igot.cb.pores.repository.CommunityEngagementRepository;
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Repairs the community documents in ES and Redis from Postgres. The communities are streamed from a
+ * server side cursor in id order and written in fixed size chunks on a bounded pool, so memory stays
+ * constant however many rows there are. The id up to which every chunk has been written is
+ * checkpointed in Redis, and a resumed run starts after it. Writes never replace a document or cache
+ * entry that a concurrent counter update made newer.
+ */
+@Service
+@Slf4j
+public class CommunityResyncService {
+
+    private static final String CHECKPOINT_KEY = "community:resync:checkpoint";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    private CommunityEngagementRepository communityEngagementRepository;
+
+    @Autowired
+    private EsUtilService esUtilService;
+
+    @Autowired
+    private EsFieldProjector esFieldProjector;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private SearchResultCacheService searchResultCacheService;
+
+    @Autowired
+    private CommunityIndexRouter communityIndexRouter;
+
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    @Value("${community.resync.chunk.size}")
+    private int chunkSize;
+
+    @Value("${community.resync.threads}")
+    private int threads;
+
+    @Value("${community.resync.queue.capacity}")
+    private int queueCapacity;
+
+    /**
+     * Streams every active community, from the last checkpoint when resuming, and returns how many
+     * were written.
+     */
+    @Transactional(readOnly = true)
+    public long resync(boolean resume) throws InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A community resync is already running");
+        }
+        String checkpoint = resume ? cacheService.getCache(CHECKPOINT_KEY) : null;
+        String after = checkpoint == null ? "" : checkpoint;
+        log.info("Starting community resync after '{}'", after);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "community-resync-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Checkpointer checkpointer = new Checkpointer();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long streamed = 0;
+        try (Stream<CommunityEngagementRepository.CommunityData> communities =
+                     communityEngagementRepository.streamActiveAfter(after)) {
+            List<CommunityEngagementRepository.CommunityData> chunk = new ArrayList<>(chunkSize);
+            var iterator = communities.iterator();
+            while (iterator.hasNext() && failure.get() == null) {
+                chunk.add(iterator.next());
+                streamed++;
+                if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                    List<CommunityEngagementRepository.CommunityData> toWrite = chunk;
+                    int sequence = checkpointer.register(toWrite.get(toWrite.size() - 1).getCommunityId());
+                    writers.execute(() -> {
+                        try {
+                            writeChunk(toWrite);
+                            checkpointer.complete(sequence);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    });
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } finally {
+            writers.shutdown();
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            running.set(false);
+        }
+        if (failure.get() != null) {
+            log.error("Community resync stopped, resume continues after the last checkpoint", failure.get());
+            throw new IllegalStateException("Community resync failed", failure.get());
+        }
+        cacheService.deleteCache(CHECKPOINT_KEY);
+        log.info("Community resync wrote {} communities", streamed);
+        return streamed;
+    }
+
+    /**
+     * Reads the versions of the chunk's documents before reading the chunk again from Postgres, so a
+     * counter update written before the versions were read is contained in the rows, and one written
+     * after makes the conditional write of its document conflict and leaves it in place.
+     */
+    private void writeChunk(List<CommunityEngagementRepository.CommunityData> chunk) throws IOException {
+        List<String> communityIds = chunk.stream().map(CommunityEngagementRepository.CommunityData::getCommunityId).toList();
+        Map<String, Map<String, GetResult<Void>>> versions = new HashMap<>();
+        for (String index : communityIndexRouter.getWriteIndices()) {
+            versions.put(index, esUtilService.getDocumentVersions(index, communityIds));
+        }
+        Map<String, Map<String, Object>> documents = new HashMap<>();
+        Map<String, Object> cacheEntries = new HashMap<>();
+        for (CommunityEngagementRepository.CommunityData community : communityEngagementRepository.findActiveByIds(communityIds)) {
+            JsonNode dataNode = mapper.readTree(community.getData());
+            documents.put(community.getCommunityId(),
+                    esFieldProjector.project(dataNode, cbServerProperties.getElasticCommunityJsonPath()));
+            cacheEntries.put(Constants.REDIS_KEY_PREFIX + "community:" + community.getCommunityId(), dataNode);
+        }
+        if (documents.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Map<String, GetResult<Void>>> index : versions.entrySet()) {
+            BulkResponse response = esUtilService.updateDocumentsIfUnchanged(index.getKey(), documents, index.getValue(),
+                    cbServerProperties.getElasticCommunityJsonPath());
+            long failed = response.items().stream()
+                    .filter(item -> item.error() != null && item.status() != HttpStatus.CONFLICT.value())
+                    .count();
+            if (failed > 0) {
+                throw new IllegalStateException(failed + " communities of the chunk failed to write to " + index.getKey());
+            }
+        }
+        // only missing entries are filled, the counter updates keep existing ones current
+        cacheService.putCacheAllIfAbsent(cacheEntries);
+        cacheService.deleteCache(Constants.CATEGORY_LIST_ALL_REDIS_KEY_PREFIX);
+        searchResultCacheService.invalidate(documents.keySet());
+    }
+
+    /**
+     * Advances the checkpoint to the last id of the highest chunk below which every chunk has been
+     * written, since chunks complete out of order.
+     */
+    private class Checkpointer {
+        private final TreeMap<Integer, String> lastIds = new TreeMap<>();
+        private final Set<Integer> completed = new HashSet<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private int nextSequence;
+
+        int register(String lastCommunityId) {
+            lock.lock();
+            try {
+                lastIds.put(nextSequence, lastCommunityId);
+                return nextSequence++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void complete(int sequence) {
+            lock.lock();
+            try {
+                completed.add(sequence);
+                String checkpoint = null;
+                while (!lastIds.isEmpty() && completed.remove(lastIds.firstKey())) {
+                    checkpoint = lastIds.pollFirstEntry().getValue();
+                }
+                if (checkpoint != null) {
+                    cacheService.putValue(CHECKPOINT_KEY, checkpoint);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
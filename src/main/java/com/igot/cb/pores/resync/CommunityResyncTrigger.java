@@ -0,0 +1,44 @@
+package com.igot.cb.pores.resync;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Starts a community resync once the application is ready, when enabled. Kept apart from
+ * {@link CommunityResyncService} so the call goes through its transactional proxy.
+ */
+@Component
+@Slf4j
+public class CommunityResyncTrigger {
+
+    @Autowired
+    private CommunityResyncService communityResyncService;
+
+    @Value("${community.resync.on.startup}")
+    private boolean resyncOnStartup;
+
+    @Value("${community.resync.resume}")
+    private boolean resume;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resyncOnStartup() {
+        if (resyncOnStartup) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    communityResyncService.resync(resume);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.error("Startup community resync was interrupted");
+                } catch (Exception e) {
+                    log.error("Startup community resync failed", e);
+                }
+            });
+        }
+    }
+}
@@ -54,6 +54,8 @@ public class Constants {
     public static final String EXCEPTION_MSG_UPDATE = "Exception occurred while updating record to ";
     public static final String ERROR = "ERROR";
     public static final String COMMUNITY_ID = "communityId";
+    public static final String PIT = "pit";
+    public static final String SEARCH_AFTER = "searchAfter";
     public static final String COUNT_OF_PEOPLE_JOINED = "countOfPeopleJoined";
     public static final String STATUS = "status";
     public static final String INCREMENT = "increment";
@@ -61,6 +63,10 @@ public class Constants {
     public static final String DECREMENT = "decrement";
     public static final String INDEX_NAME = "community_entity";
     public static final String CATEGORY_LIST_ALL_REDIS_KEY_PREFIX = "community_category_sub_cat_list";
+    public static final String RETRY_TOPIC_SUFFIX = "-retry";
+    public static final String RETRY_BACKOFF_TOPIC_SUFFIX = "-backoff";
+    public static final String DEAD_LETTER_TOPIC_SUFFIX = "-dlt";
+    public static final String COUNTER_SOURCE_TOPIC_HEADER = "counter_source_topic";
 
     private Constants() {
     }
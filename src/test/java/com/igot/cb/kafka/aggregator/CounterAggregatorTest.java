@@ -0,0 +1,138 @@
+package com.igot.cb.kafka.aggregator;
+
+import com.igot.cb.kafka.backpressure.AdaptiveBackpressureController;
+import com.igot.cb.kafka.dedupe.EventDeduplicator;
+import com.igot.cb.kafka.service.CommunityCounterService;
+import com.igot.cb.pores.repository.CommunityEngagementRepository;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CounterAggregatorTest {
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition("community.post.count", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("community.post.count", 1);
+    private static final TopicPartition PARTITION_2 = new TopicPartition("community.post.count", 2);
+
+    private final List<Map<String, Map<String, Long>>> writtenDeltas = new ArrayList<>();
+    private final List<String> acknowledged = new ArrayList<>();
+    private final AtomicInteger released = new AtomicInteger();
+    private final EventDeduplicator eventDeduplicator = new EventDeduplicator(60_000, 6);
+    private volatile boolean failWrites;
+    private AdaptiveBackpressureController backpressureController;
+    private CounterAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new CounterAggregator(60_000, 1_000);
+        backpressureController = new AdaptiveBackpressureController(60_000, 100, 100, 100, 100) {
+            @Override
+            public void release(int permits) {
+                released.addAndGet(permits);
+            }
+        };
+        ReflectionTestUtils.setField(aggregator, "communityCounterService", new CommunityCounterService() {
+            @Override
+            public List<CommunityEngagementRepository.CommunityData> applyCounterDeltas(
+                    Map<String, Map<String, Long>> communityDeltas) {
+                if (failWrites) {
+                    throw new IllegalStateException("postgres is down");
+                }
+                writtenDeltas.add(communityDeltas);
+                return List.of();
+            }
+
+            @Override
+            public void propagate(List<CommunityEngagementRepository.CommunityData> updatedCommunities) {
+            }
+        });
+        ReflectionTestUtils.setField(aggregator, "eventDeduplicator", eventDeduplicator);
+        ReflectionTestUtils.setField(aggregator, "backpressureController", backpressureController);
+    }
+
+    @AfterEach
+    void tearDown() {
+        failWrites = false;
+        aggregator.shutdown();
+        backpressureController.shutdown();
+    }
+
+    @Test
+    void flushWritesTheMergedDeltasAndAcknowledgesEveryBatch() throws Exception {
+        aggregator.addBatch(Map.of("c1", Map.of("countOfPeopleLiked", 1L, "countOfPeopleJoined", 1L)),
+                Map.of(PARTITION_0, 10L), acknowledgment("first"), List.of("e1", "e2"), 2);
+        aggregator.addBatch(Map.of("c1", Map.of("countOfPeopleLiked", 1L, "countOfPeopleJoined", -1L)),
+                Map.of(PARTITION_1, 20L), acknowledgment("second"), List.of("e3", "e4"), 2);
+
+        aggregator.flush();
+
+        assertEquals(List.of(Map.of("c1", Map.of("countOfPeopleLiked", 2L))), writtenDeltas);
+        assertEquals(List.of("first", "second"), acknowledged);
+        assertEquals(4, released.get());
+        assertTrue(eventDeduplicator.isDuplicate("e1") && eventDeduplicator.isDuplicate("e4"));
+    }
+
+    @Test
+    void failedFlushKeepsTheBatchesForTheNextFlush() throws Exception {
+        aggregator.addBatch(Map.of("c1", Map.of("countOfPeopleLiked", 1L)),
+                Map.of(PARTITION_0, 10L), acknowledgment("first"), List.of("e1"), 1);
+        failWrites = true;
+
+        assertThrows(IllegalStateException.class, aggregator::flush);
+        assertEquals(List.of(), acknowledged);
+        assertEquals(0, released.get());
+
+        failWrites = false;
+        aggregator.flush();
+
+        assertEquals(List.of(Map.of("c1", Map.of("countOfPeopleLiked", 1L))), writtenDeltas);
+        assertEquals(List.of("first"), acknowledged);
+        assertEquals(1, released.get());
+    }
+
+    @Test
+    void failedRevokeFlushDropsTheRevokedPartitionsAndRewindsTheKeptOnes() throws Exception {
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(PARTITION_0, PARTITION_1, PARTITION_2));
+        consumer.seek(PARTITION_1, 30L);
+        consumer.seek(PARTITION_2, 8L);
+        aggregator.addBatch(Map.of("c1", Map.of("countOfPeopleLiked", 1L)),
+                Map.of(PARTITION_0, 10L, PARTITION_1, 20L), acknowledgment("mixed"), List.of("e1", "e2"), 2);
+        aggregator.addBatch(Map.of("c2", Map.of("countOfPeopleLiked", 1L)),
+                Map.of(PARTITION_1, 25L), acknowledgment("later"), List.of("e3"), 1);
+        aggregator.addBatch(Map.of("c3", Map.of("countOfPeopleLiked", 1L)),
+                Map.of(PARTITION_2, 5L), acknowledgment("untouched"), List.of("e4"), 1);
+        failWrites = true;
+
+        assertThrows(IllegalStateException.class, () -> aggregator.flushOnRevoke(consumer, List.of(PARTITION_0)));
+
+        assertEquals(3, released.get());
+        assertEquals(20L, consumer.position(PARTITION_1));
+        assertEquals(8L, consumer.position(PARTITION_2));
+
+        failWrites = false;
+        aggregator.flush();
+
+        assertEquals(List.of(Map.of("c3", Map.of("countOfPeopleLiked", 1L))), writtenDeltas);
+        assertEquals(List.of("untouched"), acknowledged);
+        assertEquals(4, released.get());
+    }
+
+    private Acknowledgment acknowledgment(String name) {
+        return () -> acknowledged.add(name);
+    }
+}
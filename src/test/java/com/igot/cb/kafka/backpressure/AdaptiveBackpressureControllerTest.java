@@ -0,0 +1,150 @@
+package com.igot.cb.kafka.backpressure;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveBackpressureControllerTest {
+
+    private final DownstreamLatencyTracker downstreamLatencyTracker = new DownstreamLatencyTracker();
+    private final List<MessageListenerContainer> containers = new ArrayList<>();
+    private final FakeContainer container = new FakeContainer();
+    private AdaptiveBackpressureController controller;
+
+    @BeforeEach
+    void setUp() {
+        containers.add(container);
+        controller = new AdaptiveBackpressureController(60_000, 100, 100, 100, 8);
+        ReflectionTestUtils.setField(controller, "downstreamLatencyTracker", downstreamLatencyTracker);
+        ReflectionTestUtils.setField(controller, "kafkaListenerEndpointRegistry", new KafkaListenerEndpointRegistry() {
+            @Override
+            public Collection<MessageListenerContainer> getListenerContainers() {
+                return containers;
+            }
+        });
+        ReflectionTestUtils.setField(controller, "enabled", true);
+        ReflectionTestUtils.setField(controller, "minInFlight", 2);
+        ReflectionTestUtils.setField(controller, "maxInFlight", 8);
+        ReflectionTestUtils.setField(controller, "increaseStep", 1);
+        ReflectionTestUtils.setField(controller, "decreaseFactor", 0.5);
+        ReflectionTestUtils.setField(controller, "errorRateThreshold", 0.1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.shutdown();
+    }
+
+    @Test
+    void reachingTheLimitPausesTheContainersUntilUpdatesAreReleased() {
+        controller.acquire(7);
+        assertFalse(container.isPauseRequested());
+
+        controller.acquire(1);
+        assertTrue(container.isPauseRequested());
+
+        controller.release(1);
+        assertFalse(container.isPauseRequested());
+    }
+
+    @Test
+    void containersAreNotPausedWhenDisabled() {
+        ReflectionTestUtils.setField(controller, "enabled", false);
+
+        controller.acquire(20);
+
+        assertFalse(container.isPauseRequested());
+    }
+
+    @Test
+    void failingDownstreamShrinksTheLimitAndKeepsTheContainersPausedUntilItRecovers() {
+        for (int i = 0; i < 10; i++) {
+            downstreamLatencyTracker.record(Downstream.REDIS, 1_000_000, i < 5);
+        }
+        ReflectionTestUtils.invokeMethod(controller, "tick");
+
+        assertEquals(4, controller.getInFlightLimit());
+        assertTrue(container.isPauseRequested());
+
+        controller.acquire(1);
+        controller.release(1);
+        assertTrue(container.isPauseRequested());
+
+        downstreamLatencyTracker.record(Downstream.REDIS, 1_000_000, false);
+        ReflectionTestUtils.invokeMethod(controller, "tick");
+
+        assertEquals(5, controller.getInFlightLimit());
+        assertFalse(container.isPauseRequested());
+    }
+
+    @Test
+    void containersStartedWhilePausedArePausedByTheNextDecision() {
+        controller.acquire(8);
+        FakeContainer startedLater = new FakeContainer();
+        containers.add(startedLater);
+
+        controller.acquire(1);
+
+        assertTrue(startedLater.isPauseRequested());
+    }
+
+    private static class FakeContainer implements MessageListenerContainer {
+
+        private boolean pauseRequested;
+
+        @Override
+        public void pause() {
+            pauseRequested = true;
+        }
+
+        @Override
+        public void resume() {
+            pauseRequested = false;
+        }
+
+        @Override
+        public boolean isPauseRequested() {
+            return pauseRequested;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return true;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void setupMessageListener(Object messageListener) {
+        }
+
+        @Override
+        public Map<String, Map<MetricName, ? extends Metric>> metrics() {
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.igot.cb.kafka.dedupe;
+
+import com.igot.cb.kafka.event.PostCountEvent;
+import com.igot.cb.kafka.event.PostCountStatus;
+import com.igot.cb.pores.cache.CacheService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventDeduplicatorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final EventDeduplicator deduplicator = new EventDeduplicator(600, 6, now::get);
+
+    @Test
+    void processedKeysAreDuplicatesWithinTheWindow() {
+        deduplicator.markProcessed(List.of("e1", "e2"));
+        now.addAndGet(550);
+
+        assertTrue(deduplicator.isDuplicate("e1"));
+        assertTrue(deduplicator.isDuplicate("e2"));
+        assertFalse(deduplicator.isDuplicate("e3"));
+    }
+
+    @Test
+    void processedKeysAreForgottenOnceTheWindowHasPassed() {
+        deduplicator.markProcessed("e1");
+        now.addAndGet(300);
+        deduplicator.markProcessed("e2");
+        now.addAndGet(400);
+
+        assertFalse(deduplicator.isDuplicate("e1"));
+        assertTrue(deduplicator.isDuplicate("e2"));
+
+        now.addAndGet(10_000);
+
+        assertFalse(deduplicator.isDuplicate("e2"));
+    }
+
+    @Test
+    void processedKeysAreKeptInRedisForOtherInstances() {
+        Set<String> redisKeys = new HashSet<>();
+        CacheService cacheService = new CacheService() {
+            @Override
+            public boolean exists(String key) {
+                return redisKeys.contains(key);
+            }
+
+            @Override
+            public void putKeysWithTtl(Collection<String> keys, String value, long ttlMillis) {
+                redisKeys.addAll(keys);
+            }
+        };
+        EventDeduplicator otherInstance = new EventDeduplicator(600, 6, now::get);
+        for (EventDeduplicator instance : List.of(deduplicator, otherInstance)) {
+            ReflectionTestUtils.setField(instance, "cacheService", cacheService);
+            ReflectionTestUtils.setField(instance, "redisEnabled", true);
+        }
+
+        deduplicator.markProcessed("e1");
+
+        assertTrue(otherInstance.isDuplicate("e1"));
+        assertFalse(otherInstance.isDuplicate("e2"));
+    }
+
+    @Test
+    void keyIsTheEventIdOrElseTheRecordPosition() {
+        ConsumerRecord<String, PostCountEvent> withId = new ConsumerRecord<>("community.post.count", 2, 41L, "c1",
+                new PostCountEvent("evt-1", "c1", PostCountStatus.INCREMENT));
+        ConsumerRecord<String, PostCountEvent> withoutId = new ConsumerRecord<>("community.post.count", 2, 42L, "c1",
+                new PostCountEvent(null, "c1", PostCountStatus.INCREMENT));
+
+        assertEquals("evt-1", EventDeduplicator.keyOf(withId));
+        assertEquals("community.post.count-2@42", EventDeduplicator.keyOf(withoutId));
+    }
+}
@@ -0,0 +1,60 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.StringReader;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchQueryPlannerTest {
+
+    private final SearchQueryPlanner planner = new SearchQueryPlanner();
+
+    static Stream<Arguments> plans() {
+        return Stream.of(
+                Arguments.of("exact match predicates move to filter context",
+                        "{'bool':{'must':[{'term':{'status':'active'}},{'match':{'title':'java'}}]}}",
+                        "{'bool':{'must':[{'match':{'title':'java'}}],'filter':[{'term':{'status':'active'}}]}}"),
+                Arguments.of("nested conjunctions are flattened into the parent",
+                        "{'bool':{'must':[{'match':{'title':'java'}},"
+                                + "{'bool':{'must':[{'match':{'body':'spring'}}],'must_not':[{'term':{'type':'draft'}}]}}]}}",
+                        "{'bool':{'must':[{'match':{'title':'java'}},{'match':{'body':'spring'}}],"
+                                + "'must_not':[{'term':{'type':'draft'}}]}}"),
+                Arguments.of("identical clauses are dropped",
+                        "{'bool':{'must':[{'match':{'title':'java'}},{'match':{'title':'java'}}]}}",
+                        "{'match':{'title':'java'}}"),
+                Arguments.of("or-ed terms on one field are merged",
+                        "{'bool':{'should':[{'term':{'category':'a'}},{'term':{'category':'b'}}]}}",
+                        "{'terms':{'category':['a','b']}}"),
+                Arguments.of("must_not terms on one field are merged",
+                        "{'bool':{'must':[{'match':{'title':'java'}}],"
+                                + "'must_not':[{'term':{'category':'a'}},{'terms':{'category':['b','a']}}]}}",
+                        "{'bool':{'must':[{'match':{'title':'java'}}],'must_not':[{'terms':{'category':['a','b']}}]}}"),
+                Arguments.of("should clauses are neither merged nor dropped under minimum_should_match",
+                        "{'bool':{'should':[{'term':{'category':'a'}},{'term':{'category':'b'}},{'term':{'category':'a'}}],"
+                                + "'minimum_should_match':'2'}}",
+                        "{'bool':{'should':[{'term':{'category':'a'}},{'term':{'category':'b'}},{'term':{'category':'a'}}],"
+                                + "'minimum_should_match':'2'}}"),
+                Arguments.of("should stays optional once the match_all next to it is dropped",
+                        "{'bool':{'must':[{'match_all':{}}],'should':[{'match':{'title':'java'}}]}}",
+                        "{'bool':{'should':[{'match':{'title':'java'}}],'minimum_should_match':'0'}}"),
+                Arguments.of("a bool without clauses matches everything",
+                        "{'bool':{'must':[{'match_all':{}}]}}",
+                        "{'match_all':{}}")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plans")
+    void plansQuery(String description, String query, String expected) {
+        assertEquals(query(expected).toString(), planner.plan(query(query)).toString(), description);
+    }
+
+    private static Query query(String json) {
+        return Query.of(q -> q.withJson(new StringReader(json.replace('\'', '"'))));
+    }
+}